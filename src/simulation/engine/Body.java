@@ -1,9 +1,10 @@
 package simulation.engine;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -20,6 +21,10 @@ public final class Body {
 	private static double defaultFriction = 0;
 	private static double defaultDensity = 0.025;
 
+	// how much of the tilt between two bodies touching along their sides is
+	// corrected in each step
+	private static final double TILT_CORRECTION = .5;
+
 	// Shape types:
 	/**
 	 * Type constant that corresponds to any shape that does not fit into the
@@ -47,9 +52,13 @@ public final class Body {
 	 */
 	public static final int WALL = 3;
 
+	// Gives every body its own id:
+	private static final AtomicInteger nextId = new AtomicInteger(1);
+
 	// The actual body's fields:
+	private final int id = nextId.getAndIncrement();
 	private CollisionShape shape;
-	private Vector velocity;
+	private double velocityX, velocityY;
 
 	// The type of shape this body represents:
 	private int type = 0;
@@ -69,15 +78,30 @@ public final class Body {
 	// There is no difference between static and kinetic friction.
 	private double friction;
 
+
 	// If this is true, then the object will not move.
 	private boolean fixed;
 
-	private Color color;// The body's color.
+	// A kinematic body moves by the velocity it is given, but nothing pushes
+	// it, as if it had infinite mass.
+	private boolean kinematic;
+
+	// A sensor only notices which bodies overlap it; it never pushes them or
+	// gets pushed.
+	private boolean sensor;
+
+	// Collision filtering: two bodies only collide if each one's category
+	// has a bit in common with the other's mask.
+	private int category = 1;
+	private int mask = ~0;
 
-	// Event management:
-	private ArrayList<ChangeListener> changeListenersArrayList = new ArrayList<ChangeListener>();
-	private List<ChangeListener> changeListeners = Collections
-			.synchronizedList(changeListenersArrayList);
+	// The body's color, or null until somebody asks for it if it is to be
+	// random:
+	private Color color;
+
+	// Event management. The listeners are only created once there are any,
+	// and are replaced instead of changed, so firing an event takes no lock:
+	private volatile ChangeListener[] changeListeners;
 
 	/**
 	 * Creates a body with a given shape, mass, type and color.
@@ -97,7 +121,6 @@ public final class Body {
 		this.mass = mass;
 		this.type = type;
 
-		velocity = new Vector();
 		density = mass / shape.area();
 		momentOfInertia = density * shape.momentOfInertia();
 
@@ -121,8 +144,7 @@ public final class Body {
 	 *            number that is not defined is the same as specifying 0.
 	 */
 	public Body(CollisionShape shape, double mass, int type) {
-		this(shape, mass, new Color((int) (Math.random() * 256), (int) (Math
-				.random() * 256), (int) (Math.random() * 256)), type);
+		this(shape, mass, null, type);
 	}
 
 	/**
@@ -151,8 +173,7 @@ public final class Body {
 	 *            the mass of this body.
 	 */
 	public Body(CollisionShape shape, double mass) {
-		this(shape, mass, new Color((int) (Math.random() * 256), (int) (Math
-				.random() * 256), (int) (Math.random() * 256)), 0);
+		this(shape, mass, null, 0);
 	}
 
 	/**
@@ -263,7 +284,7 @@ public final class Body {
 	 * @return the velocity vector
 	 */
 	public Vector velocity() {
-		return velocity;
+		return new Vector(velocityX, velocityY);
 	}
 
 	/**
@@ -332,13 +353,120 @@ public final class Body {
 	}
 
 	/**
-	 * If true, makes the body fixed; if false, makes it free.
+	 * If true, makes the body fixed; if false, makes it free. A fixed body
+	 * loses its velocity and ignores impulses until it is freed again.
 	 * 
 	 * @param on
 	 *            true if it should be fixed; false if not
 	 */
 	public void setFixed(boolean on) {
 		fixed = on;
+		if (on) {
+			velocityX = 0;
+			velocityY = 0;
+			angularVelocity = 0;
+		}
+	}
+
+	/**
+	 * Tells whether the body is kinematic. A kinematic body moves by the
+	 * velocity it is given and pushes the bodies in its way, but nothing
+	 * pushes it back: collisions, gravity, springs and joints treat it as if
+	 * it had infinite mass. It never collides with fixed bodies or other
+	 * kinematic bodies, so it is cheap to move something the user controls.
+	 * 
+	 * @return whether the body is kinematic
+	 */
+	public boolean isKinematic() {
+		return kinematic;
+	}
+
+	/**
+	 * Make the body kinematic, or let it be pushed around again. A fixed body
+	 * stays fixed either way.
+	 * 
+	 * @param kinematic
+	 *            whether the body is kinematic
+	 */
+	public void setKinematic(boolean kinematic) {
+		this.kinematic = kinematic;
+	}
+
+	/**
+	 * Tells whether the body is a sensor. A sensor finds the bodies that
+	 * overlap it, but it does not collide with them: nothing pushes it and it
+	 * pushes nothing. The simulation tells its <code>SensorListener</code>s
+	 * when bodies start or stop overlapping a sensor.
+	 * 
+	 * @return whether the body is a sensor
+	 */
+	public boolean isSensor() {
+		return sensor;
+	}
+
+	/**
+	 * Make the body a sensor, or make it collide normally again. A sensor
+	 * that should stay in place, like a goal, should also be fixed.
+	 * 
+	 * @param sensor
+	 *            whether the body is a sensor
+	 */
+	public void setSensor(boolean sensor) {
+		this.sensor = sensor;
+	}
+
+	/**
+	 * Get the body's collision categories, a set of bits that says which
+	 * groups the body is in. A new body is in the first group.
+	 * 
+	 * @return the categories
+	 */
+	public int getCategory() {
+		return category;
+	}
+
+	/**
+	 * Set the body's collision categories, a set of bits that says which
+	 * groups the body is in.
+	 * 
+	 * @param category
+	 *            - the new categories
+	 */
+	public void setCategory(int category) {
+		this.category = category;
+	}
+
+	/**
+	 * Get the body's collision mask, a set of bits that says which groups the
+	 * body collides with. A new body collides with every group.
+	 * 
+	 * @return the mask
+	 */
+	public int getMask() {
+		return mask;
+	}
+
+	/**
+	 * Set the body's collision mask, a set of bits that says which groups the
+	 * body collides with.
+	 * 
+	 * @param mask
+	 *            - the new mask
+	 */
+	public void setMask(int mask) {
+		this.mask = mask;
+	}
+
+	/**
+	 * Tells whether the categories and masks of this body and another let
+	 * them collide. Both bodies have to accept each other.
+	 * 
+	 * @param other
+	 *            the other body
+	 * @return whether the bodies may collide
+	 */
+	public boolean canCollide(Body other) {
+		return (category & other.mask) != 0 && (other.category & mask) != 0;
 	}
 
 	/**
@@ -386,7 +514,20 @@ public final class Body {
 	 *            the new velocity
 	 */
 	public void setVelocity(Vector v) {
-		velocity = v;
+		setVelocity(v.getX(), v.getY());
+	}
+
+	/**
+	 * Set the body's average velocity.
+	 * 
+	 * @param vx
+	 *            the new velocity's x coordinate
+	 * @param vy
+	 *            the new velocity's y coordinate
+	 */
+	void setVelocity(double vx, double vy) {
+		velocityX = vx;
+		velocityY = vy;
 	}
 
 	/**
@@ -406,23 +547,37 @@ public final class Body {
 	 *            how many time units to pass
 	 */
 	public void step(double amount) {
+		// fixed bodies never get any velocity, so there is nothing to do
 		if (!fixed) {
-			shape.moveRotating(angularVelocity * amount, velocity
-					.multiply(amount));
-		} else {
-			velocity = new Vector();
-			angularVelocity = 0;
+			shape.moveRotating(angularVelocity * amount, velocityX * amount,
+					velocityY * amount);
 		}
 	}
 
 	/**
-	 * Add an impulse to the object's center of mass.
+	 * Add an impulse to the object's center of mass. Fixed and kinematic
+	 * bodies ignore impulses.
 	 * 
 	 * @param imp
 	 *            the impulse vector
 	 */
 	public void addImpulse(Vector imp) {
-		velocity = velocity.add(imp.divide(mass));
+		addImpulse(imp.getX(), imp.getY());
+	}
+
+	/**
+	 * Add an impulse to the object's center of mass.
+	 * 
+	 * @param impX
+	 *            the impulse's x coordinate
+	 * @param impY
+	 *            the impulse's y coordinate
+	 */
+	void addImpulse(double impX, double impY) {
+		if (!fixed && !kinematic) {
+			velocityX += impX / mass;
+			velocityY += impY / mass;
+		}
 	}
 
 	/**
@@ -434,13 +589,45 @@ public final class Body {
 	 *            where the impulse originates
 	 */
 	public void addImpulse(Vector imp, Vector origin) {
-		addImpulse(imp);
-		Vector relOrigin = origin.subtract(shape.center());
-		Vector tangent = relOrigin.quarterCounter();
-		double torque = imp.dotProduct(tangent);
+		addImpulse(imp.getX(), imp.getY(), origin.getX(), origin.getY());
+	}
+
+	/**
+	 * Add an impulse to a certain absolute point on the object.
+	 * 
+	 * @param impX
+	 *            the impulse's x coordinate
+	 * @param impY
+	 *            the impulse's y coordinate
+	 * @param originX
+	 *            the x coordinate of where the impulse originates
+	 * @param originY
+	 *            the y coordinate of where the impulse originates
+	 */
+	void addImpulse(double impX, double impY, double originX, double originY) {
+		if (fixed || kinematic) {
+			return;
+		}
+		addImpulse(impX, impY);
+		// the impulse along the tangent, times the distance from the center
+		double torque = impY * (originX - shape.centerX()) - impX
+				* (originY - shape.centerY());
 		angularVelocity += torque / (momentOfInertia);
 	}
 
+	/**
+	 * Add an angular impulse, which turns the body without moving it. Fixed
+	 * and kinematic bodies ignore it.
+	 * 
+	 * @param impulse
+	 *            the angular impulse
+	 */
+	void addAngularImpulse(double impulse) {
+		if (!fixed && !kinematic) {
+			angularVelocity += impulse / momentOfInertia;
+		}
+	}
+
 	/**
 	 * Get the velocity at a certain absolute point on the object.
 	 * 
@@ -449,135 +636,349 @@ public final class Body {
 	 * @return the velocity vector at pos
 	 */
 	public Vector velocityAt(Vector pos) {
-		Vector relPos = pos.subtract(shape.center());
-		Vector tanVel = relPos.quarterCounter().multiply(angularVelocity);
-		return velocity.add(tanVel);
+		return new Vector(velocityAtX(pos.getY()), velocityAtY(pos.getX()));
+	}
+
+	/**
+	 * Get the x coordinate of the velocity at a point on the object, which
+	 * only depends on the point's y coordinate.
+	 * 
+	 * @param y
+	 *            the point's y coordinate
+	 * @return the x coordinate of the velocity there
+	 */
+	double velocityAtX(double y) {
+		return velocityX - (y - shape.centerY()) * angularVelocity;
+	}
+
+	/**
+	 * Get the y coordinate of the velocity at a point on the object, which
+	 * only depends on the point's x coordinate.
+	 * 
+	 * @param x
+	 *            the point's x coordinate
+	 * @return the y coordinate of the velocity there
+	 */
+	double velocityAtY(double x) {
+		return velocityY + (x - shape.centerX()) * angularVelocity;
+	}
+
+	/**
+	 * Get how much the body's velocity changes per unit of impulse. This is 0
+	 * for fixed and kinematic bodies, which act as if they had infinite mass.
+	 * 
+	 * @return the inverse of the mass
+	 */
+	double inverseMass() {
+		return fixed || kinematic ? 0 : 1 / mass;
+	}
+
+	/**
+	 * Get how much the body's angular velocity changes per unit of angular
+	 * impulse. This is 0 for fixed and kinematic bodies.
+	 * 
+	 * @return the inverse of the moment of inertia
+	 */
+	double inverseMomentOfInertia() {
+		return fixed || kinematic ? 0 : 1 / momentOfInertia;
 	}
 
 	/**
 	 * Get the inertia at a certain absolute point on the object. A body has
 	 * less inertia when pushing it far from its center and tangent to it.
 	 * 
-	 * @param res
-	 *            the collision result that represents how to get the inertia
+	 * @param px
+	 *            the x coordinate of the point
+	 * @param py
+	 *            the y coordinate of the point
+	 * @param dirX
+	 *            the x coordinate of the unit direction of the push
+	 * @param dirY
+	 *            the y coordinate of the unit direction of the push
 	 * @return the inertia
 	 */
-	private double inertiaAt(CollisionResult res) {
-		Vector relOrigin = res.contactPoint().subtract(shape.center());
-		Vector tangent = relOrigin.quarterCounter().unit();
-		double rad = relOrigin.magnitude();
-		double sinTheta = Math
-				.abs(res.translation().unit().dotProduct(tangent));
-		double angular = sinTheta * sinTheta * rad * rad / (momentOfInertia);
+	private double inertiaAt(double px, double py, double dirX, double dirY) {
+		// the part of the push that is tangent to the body, times the
+		// distance from the center
+		double lever = dirX * (shape.centerY() - py) + dirY
+				* (px - shape.centerX());
+		double angular = lever * lever / (momentOfInertia);
 		return 1 / (1 / mass + angular);
 	}
 
+	/**
+	 * Get a number that is different for every body.
+	 * 
+	 * @return the id
+	 */
+	int id() {
+		return id;
+	}
+
+	/**
+	 * Push this body and another apart at both points of a two-point contact.
+	 * The impulses at the two points change each other's velocities, so they
+	 * are found together: both points push if that stops both from
+	 * approaching; otherwise only one point pushes, or neither does. No point
+	 * ever pulls. While both points push, the bodies are also given equal and
+	 * opposite angular impulses, so that bodies tilted against each other turn
+	 * to lie flat.
+	 * 
+	 * @param other
+	 *            the other body
+	 * @param contact
+	 *            the contact, which has two points
+	 * @param unitX
+	 *            the x coordinate of the unit vector pointing from the other
+	 *            body to this one
+	 * @param unitY
+	 *            the y coordinate of the unit vector
+	 * @param bouncyCoeff
+	 *            one plus the restitution of the two bodies
+	 * @param amount
+	 *            the number of time units the step lasts, or 0 to leave the
+	 *            tilt alone
+	 * @return the total magnitude of the impulses
+	 */
+	private double pushApart(Body other, ContactBuffer contact, double unitX,
+			double unitY, double bouncyCoeff, double amount) {
+		double x1 = contact.contactX(), y1 = contact.contactY();
+		double x2 = contact.secondContactX(), y2 = contact.secondContactY();
+		// the levers of each point about each center, as rad is for one point
+		double rad1 = unitX * (shape.centerY() - y1) + unitY
+				* (x1 - shape.centerX());
+		double rad2 = unitX * (shape.centerY() - y2) + unitY
+				* (x2 - shape.centerX());
+		double otherRad1 = unitX * (other.shape.centerY() - y1) + unitY
+				* (x1 - other.shape.centerX());
+		double otherRad2 = unitX * (other.shape.centerY() - y2) + unitY
+				* (x2 - other.shape.centerX());
+		double inverseMasses = inverseMass() + other.inverseMass();
+		double inverseInertia = inverseMomentOfInertia();
+		double otherInverseInertia = other.inverseMomentOfInertia();
+		// how much a unit impulse at one point changes the speed at which
+		// each point approaches
+		double k11 = inverseMasses + rad1 * rad1 * inverseInertia + otherRad1
+				* otherRad1 * otherInverseInertia;
+		double k22 = inverseMasses + rad2 * rad2 * inverseInertia + otherRad2
+				* otherRad2 * otherInverseInertia;
+		double k12 = inverseMasses + rad1 * rad2 * inverseInertia + otherRad1
+				* otherRad2 * otherInverseInertia;
+		// how much each point's approach speed must change
+		double b1 = -bouncyCoeff * ((velocityAtX(y1) - other.velocityAtX(y1))
+				* unitX + (velocityAtY(x1) - other.velocityAtY(x1)) * unitY);
+		double b2 = -bouncyCoeff * ((velocityAtX(y2) - other.velocityAtX(y2))
+				* unitX + (velocityAtY(x2) - other.velocityAtY(x2)) * unitY);
+		double impulse1 = 0, impulse2 = 0;
+		boolean solved = false;
+		double det = k11 * k22 - k12 * k12;
+		// the points may be too close together to tell apart
+		if (det > 1e-9 * k11 * k22) {
+			impulse1 = (k22 * b1 - k12 * b2) / det;
+			impulse2 = (k11 * b2 - k12 * b1) / det;
+			solved = impulse1 >= 0 && impulse2 >= 0;
+		}
+		if (!solved) {
+			// only the first point pushes, and the second must not approach
+			impulse1 = b1 / k11;
+			impulse2 = 0;
+			solved = impulse1 >= 0 && k12 * impulse1 >= b2;
+		}
+		if (!solved) {
+			impulse1 = 0;
+			impulse2 = b2 / k22;
+			solved = impulse2 >= 0 && k12 * impulse2 >= b1;
+		}
+		if (!solved) {
+			// neither point is approaching
+			impulse1 = 0;
+			impulse2 = 0;
+		}
+		addImpulse(unitX * impulse1, unitY * impulse1, x1, y1);
+		other.addImpulse(-unitX * impulse1, -unitY * impulse1, x1, y1);
+		addImpulse(unitX * impulse2, unitY * impulse2, x2, y2);
+		other.addImpulse(-unitX * impulse2, -unitY * impulse2, x2, y2);
+		// While both ends are held up the bodies are lying against each
+		// other, so a tilt between them is turned out with equal and opposite
+		// angular impulses. A body tipping over an edge is held up at one end
+		// only, so it is left to fall.
+		double inverseInertias = inverseInertia + otherInverseInertia;
+		if (amount > 0 && impulse1 > 0 && impulse2 > 0
+				&& inverseInertias > 0) {
+			double angularImpulse = TILT_CORRECTION * contact.turn() / amount
+					/ inverseInertias;
+			addAngularImpulse(angularImpulse);
+			other.addAngularImpulse(-angularImpulse);
+		}
+		return impulse1 + impulse2;
+	}
+
 	/**
 	 * Perform a collision with another body.
 	 * 
 	 * @param other
 	 *            the other body.
+	 * @return whether the bodies were touching
+	 * @deprecated This allocates a buffer for every call; use
+	 *             <code>collide(other, contact)</code> with a buffer that is
+	 *             kept instead.
+	 */
+	@Deprecated
+	public boolean collide(Body other) {
+		return collide(other, new ContactBuffer());
+	}
+
+	/**
+	 * Perform a collision with another body, using a buffer for the contact
+	 * so that nothing is allocated. If either body is a sensor, this only
+	 * tells whether they overlap.
+	 * 
+	 * @param other
+	 *            the other body.
+	 * @param contact
+	 *            where to put the contact while it is resolved
+	 * @return whether the bodies were touching
+	 */
+	public boolean collide(Body other, ContactBuffer contact) {
+		return collide(other, contact, 0);
+	}
+
+	/**
+	 * Perform a collision with another body during a step. Bodies touching
+	 * along their sides are also turned a little towards lying flat, through
+	 * the impulses that push them apart.
+	 * 
+	 * @param other
+	 *            the other body.
+	 * @param contact
+	 *            where to put the contact while it is resolved
+	 * @param amount
+	 *            the number of time units the step lasts
+	 * @return whether the bodies were touching
 	 */
-	public void collide(Body other) {
-		CollisionResult res = shape.collide(other.shape);
-		if (res != null) { // there is a collision
-			Vector trans = res.translation();
-			Vector contact = res.contactPoint();
-			// unit vector towards the other body
-			Vector towards = trans.withMagnitude(-1);
-			// unit vector tangent to the collision
-			Vector tangent = towards.quarterClockwise();
+	boolean collide(Body other, ContactBuffer contact, double amount) {
+		if (sensor || other.sensor) {
+			// sensors only check for overlap, so they see fixed and kinematic
+			// bodies too; there is nothing to resolve
+			return shape.overlaps(other.shape, contact);
+		}
+		if ((fixed || kinematic) && (other.fixed || other.kinematic)) {
+			// neither can be pushed, so there is nothing to resolve
+			return false;
+		}
+		if (kinematic) {
+			// the body that is pushed is always the first one below
+			return other.collide(this, contact, amount);
+		}
+		if (!shape.collide(other.shape, contact)) {
+			return false;
+		}
+		double transX = contact.translationX();
+		double transY = contact.translationY();
+		double transLength = Math.sqrt(transX * transX + transY * transY);
+		// unit vector along the translation; towards the other body is the
+		// opposite way
+		double unitX = transX / transLength, unitY = transY / transLength;
+		// unit vector tangent to the collision
+		double tangentX = -unitY, tangentY = unitX;
+		// this determines how much the objects repel each other
+		double bouncyCoeff = 1 + bounciness * other.bounciness;
+		// where the bodies push on each other, and how hard
+		double cx, cy, magImpulseAway;
+		if (contact.contactCount() == 2) {
+			magImpulseAway = pushApart(other, contact, unitX, unitY,
+					bouncyCoeff, amount);
+			// friction acts between the two points
+			cx = (contact.contactX() + contact.secondContactX()) / 2;
+			cy = (contact.contactY() + contact.secondContactY()) / 2;
+		} else {
+			cx = contact.contactX();
+			cy = contact.contactY();
 			// velocity relative to the other
-			Vector relVel = velocityAt(contact).subtract(
-					other.velocityAt(contact));
+			double relVelX = velocityAtX(cy) - other.velocityAtX(cy);
+			double relVelY = velocityAtY(cx) - other.velocityAtY(cx);
 			// how much of this velocity is smashing the bodies together
-			double vTowards = relVel.dotProduct(towards);
-			// the contact point relative to the center
-			Vector relContact = contact.subtract(shape.center());
+			double vTowards = -(relVelX * unitX + relVelY * unitY);
 			// the distance from the center to a point such that the line
-			// containing
-			// the point and the center and the line containing the point and
-			// the
-			// contact point are perpendicular, AND the line containing the
-			// point
-			// and the contact point overlaps with the translation vector
-			double rad = trans.unit().dotProduct(relContact.quarterCounter());
-			// the contact point relative to the other center
-			Vector otherRelContact = contact.subtract(other.shape.center());
+			// containing the point and the center and the line containing the
+			// point and the contact point are perpendicular, AND the line
+			// containing the point and the contact point overlaps with the
+			// translation vector
+			double rad = unitX * (shape.centerY() - cy) + unitY
+					* (cx - shape.centerX());
 			// similar to rad, for the other object
-			double otherRad = trans.unit().dotProduct(
-					otherRelContact.quarterCounter());
-			// this determines how much the objects repel each other
-			double bouncyCoeff = 1 + bounciness * other.bounciness;
+			double otherRad = unitX * (other.shape.centerY() - cy) + unitY
+					* (cx - other.shape.centerX());
 			// the magnitude of the impulse away
 			// if bouncyCoeff is 2, this formula keeps Ek constant
 			// that is how I derived it.
-			double magImpulseAway = Math
-					.abs(bouncyCoeff
-							* vTowards
-							/ (1 / mass + 1 / other.mass + rad * rad
-									/ momentOfInertia + otherRad * otherRad
-									/ other.momentOfInertia));
-			// the impulse vector going away
-			Vector impulseAway = trans.withMagnitude(magImpulseAway);
-			// I have to add these impulses because they affect how friction is
-			// calculated
-			addImpulse(impulseAway, contact);
+			magImpulseAway = Math.abs(bouncyCoeff
+					* vTowards
+					/ (inverseMass() + other.inverseMass() + rad * rad
+							* inverseMomentOfInertia() + otherRad * otherRad
+							* other.inverseMomentOfInertia()));
+			// the impulse going away
+			double awayX = unitX * magImpulseAway;
+			double awayY = unitY * magImpulseAway;
+			// I have to add these impulses because they affect how friction
+			// is calculated
+			addImpulse(awayX, awayY, cx, cy);
 			// add opposite impulse to other object
-			other.addImpulse(impulseAway.invert(), contact);
-			// this is used to calculate inertia at the contact point
-			// the translation is the tangent vector because friction is tangent
-			// to the collision
-			CollisionResult fricRes = new CollisionResult(contact, tangent);
-			// calculate inertias
-			double thisInertia = inertiaAt(fricRes);
-			double otherInertia = other.inertiaAt(fricRes);
-			double totalInertia = thisInertia + otherInertia;
-			// The maximum magnitude of velocity of friction.
-			double frictionVelocity = friction * other.friction
-					* magImpulseAway / thisInertia;
-			// I have to recalculate this because it may have changed after
-			// bouncing.
-			relVel = velocityAt(contact).subtract(other.velocityAt(contact));
-			// This is the velocity at which the bodies are sliding against each
-			// other
-			// in the direction of the tangent unit vector. It is positive if
-			// this body
-			// is sliding with the tangent vector, negative if sliding against.
-			double vTangent = 1 * otherInertia / totalInertia
-					* relVel.dotProduct(tangent);
-			double speedTangent = Math.abs(vTangent);
-			// This test ensures that the tangential velocity difference is no
-			// more than
-			// canceled out. Without this check, weird things would happen.
-			// For example, if an object had a very high friction number and
-			// collided
-			// nearly directly into the wall, it would shoot diagonally away
-			// from the wall
-			// and to the side.
-			if (frictionVelocity > speedTangent) {
-				frictionVelocity = speedTangent;
-			}
-			// Now I get the magnitude of the friction impulse.
-			double magImpulseTan = frictionVelocity * thisInertia;
-			// This ensures that the impulse will go opposite to tangential
-			// movement.
-			if (vTangent > 0)
-				magImpulseTan = -magImpulseTan;
-			// The impulse goes in the direction of or opposite to the tangent
-			// vector.
-			Vector impulseTan = tangent.multiply(magImpulseTan);
-			// add these impulses...
-			addImpulse(impulseTan, contact);
-			other.addImpulse(impulseTan.invert(), contact);
-			// This shifts the bodies to make sure they are no longer
-			// overlapping.
-			double totalMass = mass + other.mass;
-			if (!fixed)
-				shape.move(trans.multiply((totalMass - mass) / totalMass));
-			if (!other.fixed)
-				other.shape.move(trans.multiply(-mass / totalMass));
+			other.addImpulse(-awayX, -awayY, cx, cy);
+		}
+		// calculate inertias; friction is tangent to the collision
+		double thisInertia = inertiaAt(cx, cy, tangentX, tangentY);
+		double otherInertia = other.inertiaAt(cx, cy, tangentX, tangentY);
+		double totalInertia = thisInertia + otherInertia;
+		// The maximum magnitude of velocity of friction.
+		double frictionVelocity = friction * other.friction * magImpulseAway
+				/ thisInertia;
+		// I have to recalculate this because it may have changed after
+		// bouncing.
+		double relVelX = velocityAtX(cy) - other.velocityAtX(cy);
+		double relVelY = velocityAtY(cx) - other.velocityAtY(cx);
+		// This is the velocity at which the bodies are sliding against each
+		// other in the direction of the tangent unit vector. It is positive if
+		// this body is sliding with the tangent vector, negative if sliding
+		// against. A kinematic body does not give at all, so then all of the
+		// sliding is this body's.
+		double slidingShare = other.kinematic ? 1 : otherInertia
+				/ totalInertia;
+		double vTangent = slidingShare
+				* (relVelX * tangentX + relVelY * tangentY);
+		double speedTangent = Math.abs(vTangent);
+		// This test ensures that the tangential velocity difference is no
+		// more than canceled out. Without this check, weird things would
+		// happen. For example, if an object had a very high friction number
+		// and collided nearly directly into the wall, it would shoot
+		// diagonally away from the wall and to the side.
+		if (frictionVelocity > speedTangent) {
+			frictionVelocity = speedTangent;
+		}
+		// Now I get the magnitude of the friction impulse.
+		double magImpulseTan = frictionVelocity * thisInertia;
+		// This ensures that the impulse will go opposite to tangential
+		// movement.
+		if (vTangent > 0)
+			magImpulseTan = -magImpulseTan;
+		// The impulse goes in the direction of or opposite to the tangent
+		// vector. Add these impulses...
+		double tanX = tangentX * magImpulseTan, tanY = tangentY * magImpulseTan;
+		addImpulse(tanX, tanY, cx, cy);
+		other.addImpulse(-tanX, -tanY, cx, cy);
+		// This shifts the bodies to make sure they are no longer
+		// overlapping. The lighter body moves more; a fixed body does not
+		// move at all.
+		double totalInverse = inverseMass() + other.inverseMass();
+		if (!fixed) {
+			double share = inverseMass() / totalInverse;
+			shape.move(transX * share, transY * share);
 		}
+		if (!other.fixed) {
+			double share = -other.inverseMass() / totalInverse;
+			other.shape.move(transX * share, transY * share);
+		}
+		return true;
 	}
 
 	/**
@@ -655,11 +1056,17 @@ public final class Body {
 	}
 
 	/**
-	 * Returns the color of this shape.
+	 * Returns the color of this shape. A body that was not given a color gets
+	 * a random one the first time this is called.
 	 * 
 	 * @return the color of this shape.
 	 */
 	public Color getColor() {
+		if (color == null) {
+			Random random = ThreadLocalRandom.current();
+			color = new Color(random.nextInt(256), random.nextInt(256), random
+					.nextInt(256));
+		}
 		return color;
 	}
 
@@ -752,7 +1159,7 @@ public final class Body {
 	 * @return the velocity of the object.
 	 */
 	public Vector getVelocity() {
-		return velocity;
+		return new Vector(velocityX, velocityY);
 	}
 
 	/**
@@ -838,7 +1245,7 @@ public final class Body {
 	 *            - the <code>ChangeListener</code> to add.
 	 */
 	public synchronized void addChangeListener(ChangeListener listener) {
-		changeListeners.add(listener);
+		changeListeners = added(changeListeners, listener);
 	}
 
 	/**
@@ -851,7 +1258,7 @@ public final class Body {
 	 *            - the <code>ChangeListener</code> to remove.
 	 */
 	public synchronized void removeChangeListener(ChangeListener listener) {
-		changeListeners.remove(listener);
+		changeListeners = removed(changeListeners, listener);
 	}
 
 	/**
@@ -861,22 +1268,63 @@ public final class Body {
 	 * @return an array of all the <code>ChangeListener</code>s currently
 	 *         registered to this body.
 	 */
-	public synchronized ChangeListener[] getChangeListeners() {
-		return (ChangeListener[]) changeListeners.toArray();
+	public ChangeListener[] getChangeListeners() {
+		ChangeListener[] listeners = changeListeners;
+		return listeners == null ? new ChangeListener[0] : listeners.clone();
 	}
 
 	/**
-	 * Notifies all the registered listeners that the state of this <code>Body
-	 * </code> has
-	 * changed.
+	 * Get a copy of a list of listeners with one more at the end.
 	 */
-	protected synchronized void fireStateChanged() {
-		synchronized (changeListeners) {
-			ChangeEvent e = new ChangeEvent(this);
-			for (ChangeListener listener : changeListeners) {
-				listener.stateChanged(e);
+	private static ChangeListener[] added(ChangeListener[] listeners,
+			ChangeListener listener) {
+		if (listeners == null) {
+			return new ChangeListener[] { listener };
+		}
+		ChangeListener[] result = Arrays.copyOf(listeners,
+				listeners.length + 1);
+		result[listeners.length] = listener;
+		return result;
+	}
+
+	/**
+	 * Get a copy of a list of listeners without the first instance of one, or
+	 * null if none are left.
+	 */
+	private static ChangeListener[] removed(ChangeListener[] listeners,
+			ChangeListener listener) {
+		if (listeners == null) {
+			return null;
+		}
+		for (int i = 0; i < listeners.length; ++i) {
+			if (listeners[i] == listener) {
+				if (listeners.length == 1) {
+					return null;
+				}
+				int rest = listeners.length - 1 - i;
+				ChangeListener[] result = Arrays.copyOf(listeners,
+						listeners.length - 1);
+				System.arraycopy(listeners, i + 1, result, i, rest);
+				return result;
 			}
 		}
+		return listeners;
+	}
+
+	/**
+	 * Notifies all the registered listeners that the state of this
+	 * <code>Body</code> has changed. Nothing is created if nobody is
+	 * listening.
+	 */
+	protected void fireStateChanged() {
+		ChangeListener[] listeners = changeListeners;
+		if (listeners == null) {
+			return;
+		}
+		ChangeEvent e = new ChangeEvent(this);
+		for (ChangeListener listener : listeners) {
+			listener.stateChanged(e);
+		}
 	}
 	
 	@Override
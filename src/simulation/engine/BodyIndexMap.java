@@ -0,0 +1,127 @@
+package simulation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Maps bodies to ints without creating any objects. The bodies are kept in
+ * an open-addressing hash table keyed by their ids, so each solver that
+ * numbers bodies can keep its own numbers instead of storing them in the
+ * bodies.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class BodyIndexMap {
+	// ids start at 1, so the empty key is 0
+	private int[] keys = new int[16];
+	private int[] values = new int[16];
+	private int size;
+
+	/**
+	 * Get the number a body is mapped to.
+	 *
+	 * @param body
+	 *            the body
+	 * @return the number, or -1 if the body is not mapped
+	 */
+	int get(Body body) {
+		int i = slot(body.id(), keys);
+		return keys[i] == 0 ? -1 : values[i];
+	}
+
+	/**
+	 * Map a body to a number, replacing any number it had.
+	 *
+	 * @param body
+	 *            the body
+	 * @param value
+	 *            the number
+	 */
+	void put(Body body, int value) {
+		int id = body.id();
+		int i = slot(id, keys);
+		if (keys[i] == 0) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+				i = slot(id, keys);
+			}
+			keys[i] = id;
+			++size;
+		}
+		values[i] = value;
+	}
+
+	/**
+	 * Remove a body's number.
+	 *
+	 * @param body
+	 *            the body
+	 * @return the number it had, or -1 if it had none
+	 */
+	int remove(Body body) {
+		int i = slot(body.id(), keys);
+		if (keys[i] == 0) {
+			return -1;
+		}
+		int value = values[i];
+		// move later keys of the same run back, so none is cut off from its
+		// home slot by the gap
+		int mask = keys.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == 0) {
+				break;
+			}
+			int home = hash(keys[j]) & mask;
+			if (i <= j ? i < home && home <= j : i < home || home <= j) {
+				continue;
+			}
+			keys[i] = keys[j];
+			values[i] = values[j];
+			i = j;
+		}
+		keys[i] = 0;
+		--size;
+		return value;
+	}
+
+	/**
+	 * Remove every body.
+	 */
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, 0);
+			size = 0;
+		}
+	}
+
+	private static int hash(int id) {
+		return id * 0x9E3779B9 >>> 8;
+	}
+
+	/**
+	 * Get the slot a key is in, or the empty slot where it would go.
+	 */
+	private static int slot(int id, int[] keys) {
+		int mask = keys.length - 1;
+		int i = hash(id) & mask;
+		while (keys[i] != 0 && keys[i] != id) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys, oldValues = values;
+		keys = new int[2 * oldKeys.length];
+		values = new int[2 * oldKeys.length];
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != 0) {
+				int j = slot(oldKeys[i], keys);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
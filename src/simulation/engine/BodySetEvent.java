@@ -1,11 +1,15 @@
 package simulation.engine;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EventObject;
+import java.util.List;
 
 /**
  * Represents the change in the set of bodies in a <code>Simulation</code>. The
  * event encapsulates both the <code>Simulation</code> that fired it and the
- * <code>Body</code> that was either added or removed.
+ * bodies that were either added or removed. Bodies added or removed together,
+ * like with <code>addBodies</code> or in a batch, are all in one event.
  * 
  * @author Tikhon Jelvis
  * 
@@ -13,7 +17,7 @@ import java.util.EventObject;
 @SuppressWarnings("serial")
 public class BodySetEvent extends EventObject {
 
-	private final Body body;
+	private final List<Body> bodies;
 
 	/**
 	 * Creates a <code>BodySetEvent</code> that represents a change in the set
@@ -26,18 +30,47 @@ public class BodySetEvent extends EventObject {
 	 *            - the body that was either added or removed.
 	 */
 	public BodySetEvent(Simulation source, Body body) {
+		this(source, new Body[] { body });
+	}
+
+	/**
+	 * Creates a <code>BodySetEvent</code> that represents several bodies being
+	 * added to or removed from a <code>Simulation</code> at once.
+	 * 
+	 * @param source
+	 *            - the <code> Simulation </code> that fired this event.
+	 * @param bodies
+	 *            - the bodies that were either added or removed; there must be
+	 *            at least one, and the array must not change afterwards.
+	 */
+	public BodySetEvent(Simulation source, Body[] bodies) {
 		super(source);
 
-		this.body = body;
+		if (bodies.length == 0) {
+			throw new IllegalArgumentException(
+					"A BodySetEvent must have at least one body.");
+		}
+		this.bodies = Collections.unmodifiableList(Arrays.asList(bodies));
 	}
 
 	/**
 	 * Returns the body that was either removed or added to cause this event.
+	 * If the event is for several bodies, this is the first of them.
 	 * 
 	 * @return the body that was either removed or added to cause this event.
 	 */
 	public Body getBody() {
-		return body;
+		return bodies.get(0);
+	}
+
+	/**
+	 * Returns all the bodies that were either removed or added to cause this
+	 * event, in the order they were added or removed.
+	 * 
+	 * @return an unmodifiable list of the bodies.
+	 */
+	public List<Body> getBodies() {
+		return bodies;
 	}
 
 }
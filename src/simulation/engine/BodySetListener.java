@@ -5,7 +5,9 @@ import java.util.EventListener;
 /**
  * This listener is notified when the set of bodies in the simulation changes,
  * whether a body is added or taken away. The two methods each correspond to the
- * two possible cases : addition or removal. This should be fired once per body.
+ * two possible cases : addition or removal. This is fired once per change; a
+ * change may add or remove many bodies at once, so listeners should look at
+ * all of <code>BodySetEvent.getBodies()</code>.
  * 
  * @author Tikhon Jelvis
  * 
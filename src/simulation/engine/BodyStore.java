@@ -0,0 +1,218 @@
+package simulation.engine;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The bodies of a simulation, packed densely into an array. A body is
+ * removed by moving the last body into its place, so adding, removing and
+ * checking for a body all take constant time, but removing a body changes
+ * the order of the rest.
+ * <p>
+ * Since indices change, each body also gets a handle that stays the same
+ * for as long as it is in the store. A handle is a slot number, which leads
+ * to the body's index, and the slot's generation, which goes up every time
+ * the slot is emptied, so a handle to a removed body does not find the body
+ * that takes its slot next. Free slots are reused oldest first, so it takes
+ * as long as possible for a generation to come around again. The store finds
+ * a body's slot through a hash table keyed by the body's id, so finding a
+ * body never needs a search, and the bodies themselves hold nothing about
+ * the stores they are in.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class BodyStore extends AbstractList<Body> implements RandomAccess {
+	// a handle is the generation above the slot; both fit in a positive int
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << 31 - SLOT_BITS) - 1;
+
+	private Body[] dense = new Body[16];
+	// the slot of the body at each index
+	private int[] slotOf = new int[16];
+	private int size;
+	// the slot of each body, by its id
+	private final BodyIndexMap slots = new BodyIndexMap();
+
+	// for each slot, its generation, the index of its body, and the next
+	// free slot after it while it is free
+	private int[] generation = new int[16];
+	private int[] index = new int[16];
+	private int[] nextFree = new int[16];
+	private int slotCount;
+	// the free slots, oldest first
+	private int firstFree = -1, lastFree = -1;
+
+	/**
+	 * Add a body, unless it is here already.
+	 *
+	 * @param body
+	 *            the body
+	 * @return the body's handle
+	 */
+	int insert(Body body) {
+		int slot = slots.get(body);
+		if (slot >= 0) {
+			return handle(slot);
+		}
+		if (firstFree >= 0) {
+			slot = firstFree;
+			firstFree = nextFree[slot];
+			if (firstFree < 0) {
+				lastFree = -1;
+			}
+		} else {
+			if (slotCount > SLOT_MASK) {
+				throw new IllegalStateException("There are too many bodies.");
+			}
+			if (slotCount == generation.length) {
+				generation = copy(generation, 2 * slotCount);
+				index = copy(index, 2 * slotCount);
+				nextFree = copy(nextFree, 2 * slotCount);
+			}
+			slot = slotCount++;
+		}
+		if (size == dense.length) {
+			Body[] grown = new Body[2 * size];
+			System.arraycopy(dense, 0, grown, 0, size);
+			dense = grown;
+			slotOf = copy(slotOf, 2 * size);
+		}
+		index[slot] = size;
+		slotOf[size] = slot;
+		dense[size++] = body;
+		slots.put(body, slot);
+		++modCount;
+		return handle(slot);
+	}
+
+	/**
+	 * Get the handle of the body in a slot.
+	 */
+	private int handle(int slot) {
+		return generation[slot] << SLOT_BITS | slot;
+	}
+
+	/**
+	 * Get a body's handle.
+	 *
+	 * @param body
+	 *            the body
+	 * @return the handle, or -1 if the body is not here
+	 */
+	int handleOf(Body body) {
+		int slot = slots.get(body);
+		return slot < 0 ? -1 : handle(slot);
+	}
+
+	private static int[] copy(int[] array, int capacity) {
+		int[] result = new int[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/**
+	 * Get the body with a handle.
+	 *
+	 * @param handle
+	 *            the handle
+	 * @return the body, or null if it has been removed
+	 */
+	Body lookup(int handle) {
+		int slot = handle & SLOT_MASK;
+		if (handle < 0 || slot >= slotCount
+				|| generation[slot] != handle >>> SLOT_BITS) {
+			return null;
+		}
+		// a free slot's generation has moved on, so the handle is current
+		return dense[index[slot]];
+	}
+
+	/**
+	 * Remove a body by moving the last body into its place.
+	 *
+	 * @param body
+	 *            the body
+	 * @return whether the body was here
+	 */
+	boolean delete(Body body) {
+		int slot = slots.remove(body);
+		if (slot < 0) {
+			return false;
+		}
+		int i = index[slot];
+		--size;
+		dense[i] = dense[size];
+		slotOf[i] = slotOf[size];
+		index[slotOf[i]] = i;
+		dense[size] = null;
+		free(slot);
+		++modCount;
+		return true;
+	}
+
+	/**
+	 * Make a slot's old handle stale and put the slot at the end of the free
+	 * list.
+	 */
+	private void free(int slot) {
+		generation[slot] = generation[slot] + 1 & GENERATION_MASK;
+		nextFree[slot] = -1;
+		if (lastFree >= 0) {
+			nextFree[lastFree] = slot;
+		} else {
+			firstFree = slot;
+		}
+		lastFree = slot;
+	}
+
+	@Override
+	public Body get(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+					+ size);
+		}
+		return dense[i];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Body && slots.get((Body) o) >= 0;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (!(o instanceof Body)) {
+			return -1;
+		}
+		int slot = slots.get((Body) o);
+		return slot < 0 ? -1 : index[slot];
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Body && delete((Body) o);
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; ++i) {
+			free(slotOf[i]);
+			dense[i] = null;
+		}
+		slots.clear();
+		size = 0;
+		++modCount;
+	}
+}
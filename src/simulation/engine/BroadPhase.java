@@ -0,0 +1,680 @@
+package simulation.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the pairs of bodies whose bounding boxes overlap and collides them.
+ * Bodies that can move are swept along the x axis every step. Fixed bodies are
+ * kept in a separate static set whose bounding boxes are only computed when
+ * the set is rebuilt or one of them is moved, and two fixed bodies are never
+ * tested against each other. The fixed bodies' boxes are put in a grid at the
+ * same time, so each moving body only looks at the fixed bodies in the cells
+ * its box covers, however many there are elsewhere. Kinematic bodies are
+ * swept with the ones that can move, but since nothing pushes them they are
+ * never tested against fixed bodies or each other, unless one of the pair is
+ * a sensor. Pairs can also be filtered out by the bodies' collision
+ * categories and masks or by their types.
+ * <p>
+ * Every so often the dynamic bodies are put in Z-order by their centers, so
+ * bodies that are near each other in space are near each other in the arrays
+ * the sweep and the simulation's step walk over. The bodies themselves, and
+ * their ids, are the handles the rest of the simulation keeps, so nothing
+ * outside has to know when they move.
+ * <p>
+ * Pairs with a sensor only get a test of whether they overlap, which is
+ * noted in the sensor overlaps, and never reach the solver. Sensors don't
+ * notice each other.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class BroadPhase {
+	// how many steps go by between putting the dynamic bodies in Z-order
+	private static final int REORDER_INTERVAL = 32;
+
+	// the bodies that can move, in Z-order as of the last reorder
+	private Body[] dynamics = new Body[0];
+	private int dynamicCount;
+	// the index of each dynamic body in the simulation's bodies
+	private int[] dynamicIndices = new int[0];
+	// the bounding boxes of the dynamic bodies, four entries per body
+	private double[] dynamicBounds = new double[0];
+	// indices of the dynamic bodies, sorted by the left edge of their boxes
+	private int[] order = new int[0];
+	private int stepsUntilReorder;
+
+	// scratch space for reordering
+	private Body[] reordered = new Body[0];
+	private int[] reorderedIndices = new int[0];
+	private double[] centerX = new double[0], centerY = new double[0];
+	private long[] keys = new long[0];
+	private int[] rank = new int[0];
+
+	// the fixed bodies, sorted by the left edge of their boxes
+	private Body[] statics = new Body[0];
+	private int staticCount;
+	private double[] staticBounds = new double[0];
+	// where each fixed body was when its box was computed
+	private double[] staticPoses = new double[0];
+	// the smallest box around every fixed body as drawn
+	private final double[] staticExtent = new double[4];
+	// the grid over the fixed bodies' boxes; each cell lists the fixed
+	// bodies whose boxes reach into it, in the sorted order, from
+	// cellStarts[cell] up to cellStarts[cell + 1]; boxes beyond the grid's
+	// edges are counted in the cells along them
+	private double gridX, gridY, cellWidth = 1, cellHeight = 1;
+	private int columns = 1, rows = 1;
+	private int[] cellStarts = new int[2];
+	private int[] cellStatics = new int[0];
+	// scratch space for gathering the fixed bodies in several cells, and the
+	// last gathering that found each fixed body
+	private int[] nearby = new int[0];
+	private int[] gathered = new int[0];
+	private int gathering;
+
+	private final double[] bounds = new double[4];
+
+	// which body types collide with which, or null if they all do
+	private boolean[][] interactions;
+
+	// axes that separated pairs the last time they were tested
+	private final SeparationCache separations = new SeparationCache();
+	// the contact of the pair being collided
+	private final ContactBuffer contact = new ContactBuffer();
+	// pushes pairs apart instead of colliding them, while projecting
+	private PositionSolver projecting;
+	// the bodies found overlapping sensors
+	private final SensorOverlaps sensorOverlaps = new SensorOverlaps();
+
+	/**
+	 * Split the bodies into the dynamic and static sets and index the static
+	 * ones.
+	 *
+	 * @param bodies
+	 *            all the bodies in the simulation
+	 */
+	void rebuild(List<Body> bodies) {
+		int size = bodies.size();
+		if (dynamics.length < size) {
+			dynamics = new Body[size];
+			dynamicBounds = new double[4 * size];
+			order = new int[size];
+			statics = new Body[size];
+			staticBounds = new double[4 * size];
+			staticPoses = new double[3 * size];
+			nearby = new int[size];
+			gathered = new int[size];
+			gathering = 0;
+			reordered = new Body[size];
+			dynamicIndices = new int[size];
+			reorderedIndices = new int[size];
+			centerX = new double[size];
+			centerY = new double[size];
+			keys = new long[size];
+			rank = new int[size];
+		}
+		dynamicCount = 0;
+		staticCount = 0;
+		for (int i = 0; i < size; ++i) {
+			Body b = bodies.get(i);
+			if (b.fixed()) {
+				statics[staticCount++] = b;
+			} else {
+				order[dynamicCount] = dynamicCount;
+				dynamicIndices[dynamicCount] = i;
+				dynamics[dynamicCount++] = b;
+			}
+		}
+		// don't hold on to removed bodies
+		for (int i = dynamicCount; i < dynamics.length; ++i) {
+			dynamics[i] = null;
+		}
+		for (int i = staticCount; i < statics.length; ++i) {
+			statics[i] = null;
+		}
+		Arrays.fill(reordered, null);
+		indexStatics();
+		// the new bodies are in the simulation's order, so sort them next step
+		stepsUntilReorder = 0;
+	}
+
+	/**
+	 * Set whether bodies of two types collide with each other.
+	 * 
+	 * @param type1
+	 *            the first type, as returned by <code>Body.getType()</code>
+	 * @param type2
+	 *            the second type
+	 * @param collide
+	 *            whether they collide
+	 */
+	void setInteraction(int type1, int type2, boolean collide) {
+		if (type1 < 0 || type2 < 0) {
+			throw new IllegalArgumentException(
+					"Body types must not be negative.");
+		}
+		int size = Math.max(type1, type2) + 1;
+		if (interactions == null || interactions.length < size) {
+			// types that were not in the old matrix collide with everything
+			boolean[][] grown = new boolean[size][size];
+			for (int i = 0; i < size; ++i) {
+				for (int j = 0; j < size; ++j) {
+					grown[i][j] = interacts(i, j);
+				}
+			}
+			interactions = grown;
+		}
+		interactions[type1][type2] = collide;
+		interactions[type2][type1] = collide;
+	}
+
+	/**
+	 * Let bodies of every type collide with each other again.
+	 */
+	void clearInteractions() {
+		interactions = null;
+	}
+
+	/**
+	 * Tells whether bodies of two types collide with each other.
+	 * 
+	 * @param type1
+	 *            the first type
+	 * @param type2
+	 *            the second type
+	 * @return whether they collide
+	 */
+	boolean interacts(int type1, int type2) {
+		return interactions == null || type1 < 0 || type2 < 0
+				|| type1 >= interactions.length
+				|| type2 >= interactions.length
+				|| interactions[type1][type2];
+	}
+
+	/**
+	 * Tells whether every body is still in the right set, that is no body has
+	 * been fixed or freed since the last rebuild.
+	 *
+	 * @return whether the sets are up to date
+	 */
+	boolean isCurrent() {
+		for (int i = 0; i < dynamicCount; ++i) {
+			if (dynamics[i].fixed()) {
+				return false;
+			}
+		}
+		for (int i = 0; i < staticCount; ++i) {
+			if (!statics[i].fixed()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compute the static bounding boxes and sort them by their left edges.
+	 */
+	private void indexStatics() {
+		clearExtent(staticExtent);
+		for (int i = 0; i < staticCount; ++i) {
+			CollisionShape shape = statics[i].getShape();
+			shape.getOutlineBounds(bounds);
+			extend(staticExtent, bounds);
+			shape.getBounds(bounds);
+			System.arraycopy(bounds, 0, staticBounds, 4 * i, 4);
+		}
+		// insertion sort; there are rarely more than a few fixed bodies
+		for (int i = 1; i < staticCount; ++i) {
+			Body b = statics[i];
+			System.arraycopy(staticBounds, 4 * i, bounds, 0, 4);
+			int j = i;
+			while (j > 0 && staticBounds[4 * (j - 1)] > bounds[0]) {
+				statics[j] = statics[j - 1];
+				System.arraycopy(staticBounds, 4 * (j - 1), staticBounds,
+						4 * j, 4);
+				--j;
+			}
+			statics[j] = b;
+			System.arraycopy(bounds, 0, staticBounds, 4 * j, 4);
+		}
+		for (int i = 0; i < staticCount; ++i) {
+			CollisionShape shape = statics[i].getShape();
+			staticPoses[3 * i] = shape.centerX();
+			staticPoses[3 * i + 1] = shape.centerY();
+			staticPoses[3 * i + 2] = shape.rotation();
+		}
+		gridStatics();
+	}
+
+	/**
+	 * Lay a grid over the fixed bodies' boxes, with about as many cells as
+	 * there are fixed bodies, and list the bodies in each cell.
+	 */
+	private void gridStatics() {
+		// the grid covers the finite edges of the boxes; a half-plane reaches
+		// past every side it doesn't have
+		double left = Double.POSITIVE_INFINITY, top = Double.POSITIVE_INFINITY;
+		double right = Double.NEGATIVE_INFINITY;
+		double bottom = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 4 * staticCount; i += 2) {
+			double x = staticBounds[i], y = staticBounds[i + 1];
+			if (!Double.isInfinite(x)) {
+				left = Math.min(left, x);
+				right = Math.max(right, x);
+			}
+			if (!Double.isInfinite(y)) {
+				top = Math.min(top, y);
+				bottom = Math.max(bottom, y);
+			}
+		}
+		double width = right > left ? right - left : 0;
+		double height = bottom > top ? bottom - top : 0;
+		int cells = Math.max(1, staticCount);
+		// cells about as wide as they are tall
+		if (width > 0 && height > 0) {
+			columns = (int) Math.max(1, Math.min(cells,
+					Math.round(Math.sqrt(cells * width / height))));
+			rows = Math.max(1, cells / columns);
+		} else {
+			columns = width > 0 ? cells : 1;
+			rows = height > 0 ? cells : 1;
+		}
+		gridX = width > 0 ? left : 0;
+		gridY = height > 0 ? top : 0;
+		cellWidth = width > 0 ? width / columns : 1;
+		cellHeight = height > 0 ? height / rows : 1;
+
+		cells = columns * rows;
+		if (cellStarts.length < cells + 1) {
+			cellStarts = new int[cells + 1];
+		} else {
+			Arrays.fill(cellStarts, 0, cells + 1, 0);
+		}
+		// count the bodies in each cell, then turn the counts into where each
+		// cell's list starts
+		for (int s = 0; s < staticCount; ++s) {
+			int c0 = column(staticBounds[4 * s]);
+			int c1 = column(staticBounds[4 * s + 2]);
+			int r0 = row(staticBounds[4 * s + 1]);
+			int r1 = row(staticBounds[4 * s + 3]);
+			for (int r = r0; r <= r1; ++r) {
+				for (int c = c0; c <= c1; ++c) {
+					++cellStarts[r * columns + c + 1];
+				}
+			}
+		}
+		for (int cell = 0; cell < cells; ++cell) {
+			cellStarts[cell + 1] += cellStarts[cell];
+		}
+		if (cellStatics.length < cellStarts[cells]) {
+			cellStatics = new int[cellStarts[cells]];
+		}
+		// fill the lists in the sorted order, using each cell's start as the
+		// place for its next body, then move the starts back
+		for (int s = 0; s < staticCount; ++s) {
+			int c0 = column(staticBounds[4 * s]);
+			int c1 = column(staticBounds[4 * s + 2]);
+			int r0 = row(staticBounds[4 * s + 1]);
+			int r1 = row(staticBounds[4 * s + 3]);
+			for (int r = r0; r <= r1; ++r) {
+				for (int c = c0; c <= c1; ++c) {
+					cellStatics[cellStarts[r * columns + c]++] = s;
+				}
+			}
+		}
+		for (int cell = cells; cell > 0; --cell) {
+			cellStarts[cell] = cellStarts[cell - 1];
+		}
+		cellStarts[0] = 0;
+	}
+
+	/**
+	 * Get the grid column an x coordinate is in, counting anything left or
+	 * right of the grid as in the column at that edge.
+	 */
+	private int column(double x) {
+		double c = Math.floor((x - gridX) / cellWidth);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : (int) c;
+	}
+
+	/**
+	 * Get the grid row a y coordinate is in, counting anything above or
+	 * below the grid as in the row at that edge.
+	 */
+	private int row(double y) {
+		double r = Math.floor((y - gridY) / cellHeight);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : (int) r;
+	}
+
+	/**
+	 * Put the dynamic bodies in Z-order by their centers. The sweep order
+	 * holds indices into the dynamic bodies, so it is mapped to the bodies'
+	 * new indices, which keeps it sorted.
+	 */
+	private void reorder() {
+		for (int i = 0; i < dynamicCount; ++i) {
+			CollisionShape shape = dynamics[i].getShape();
+			centerX[i] = shape.centerX();
+			centerY[i] = shape.centerY();
+		}
+		ZOrder.sort(centerX, centerY, dynamicCount, keys);
+		for (int k = 0; k < dynamicCount; ++k) {
+			int i = (int) keys[k];
+			reordered[k] = dynamics[i];
+			reorderedIndices[k] = dynamicIndices[i];
+			rank[i] = k;
+		}
+		Body[] swap = dynamics;
+		dynamics = reordered;
+		reordered = swap;
+		int[] swapIndices = dynamicIndices;
+		dynamicIndices = reorderedIndices;
+		reorderedIndices = swapIndices;
+		for (int k = 0; k < dynamicCount; ++k) {
+			order[k] = rank[order[k]];
+		}
+	}
+
+	/**
+	 * Get the smallest box around every fixed body as drawn, as of the last
+	 * time the fixed bodies were indexed.
+	 *
+	 * @param extent
+	 *            an array of at least four elements, which is filled with the
+	 *            box's minimum x, minimum y, maximum x and maximum y; if there
+	 *            are no fixed bodies the minimums are infinite and the
+	 *            maximums negative infinite
+	 */
+	void getStaticExtent(double[] extent) {
+		System.arraycopy(staticExtent, 0, extent, 0, 4);
+	}
+
+	/**
+	 * Make a box empty, so that extending it by any box gives that box.
+	 *
+	 * @param extent
+	 *            the box, as minimum x, minimum y, maximum x and maximum y
+	 */
+	static void clearExtent(double[] extent) {
+		extent[0] = Double.POSITIVE_INFINITY;
+		extent[1] = Double.POSITIVE_INFINITY;
+		extent[2] = Double.NEGATIVE_INFINITY;
+		extent[3] = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Grow a box until it also covers another.
+	 *
+	 * @param extent
+	 *            the box to grow, as minimum x, minimum y, maximum x and
+	 *            maximum y
+	 * @param bounds
+	 *            the box to cover, in the same order
+	 */
+	static void extend(double[] extent, double[] bounds) {
+		extent[0] = Math.min(extent[0], bounds[0]);
+		extent[1] = Math.min(extent[1], bounds[1]);
+		extent[2] = Math.max(extent[2], bounds[2]);
+		extent[3] = Math.max(extent[3], bounds[3]);
+	}
+
+	/**
+	 * Get the number of bodies that can move.
+	 *
+	 * @return the number of dynamic bodies
+	 */
+	int dynamicCount() {
+		return dynamicCount;
+	}
+
+	/**
+	 * Get a body that can move. The bodies are reordered now and then, so the
+	 * same index does not always give the same body.
+	 *
+	 * @param i
+	 *            the body's index, between 0 and <code>dynamicCount()</code>
+	 * @return the body
+	 */
+	Body dynamicBody(int i) {
+		return dynamics[i];
+	}
+
+	/**
+	 * Get the index of a body that can move among all the simulation's
+	 * bodies, as of the last rebuild.
+	 *
+	 * @param i
+	 *            the body's index among the dynamic bodies, between 0 and
+	 *            <code>dynamicCount()</code>
+	 * @return the body's index among all the bodies
+	 */
+	int dynamicIndex(int i) {
+		return dynamicIndices[i];
+	}
+
+	/**
+	 * Get the overlaps between sensors and other bodies found while
+	 * colliding.
+	 *
+	 * @return the sensor overlaps
+	 */
+	SensorOverlaps sensorOverlaps() {
+		return sensorOverlaps;
+	}
+
+	/**
+	 * Collide every pair of bodies whose bounding boxes overlap, except for
+	 * pairs of fixed bodies.
+	 *
+	 * @param amount
+	 *            the number of time units the substep lasts
+	 * @param due
+	 *            for multi-rate stepping, whether each body is due to be
+	 *            stepped this substep, by its index among all the bodies, or
+	 *            null to collide every pair; pairs where neither body is due
+	 *            are skipped, and two bodies that touch are both made due
+	 * @param interval
+	 *            for multi-rate stepping, how many substeps go by between
+	 *            steps of each body; two bodies that touch are both stepped as
+	 *            often as the faster of them from then on
+	 */
+	void collide(double amount, boolean[] due, int[] interval) {
+		separations.nextStep();
+		// fixed bodies are only re-indexed if something moved one of them
+		for (int i = 0; i < staticCount; ++i) {
+			CollisionShape shape = statics[i].getShape();
+			if (shape.centerX() != staticPoses[3 * i]
+					|| shape.centerY() != staticPoses[3 * i + 1]
+					|| shape.rotation() != staticPoses[3 * i + 2]) {
+				indexStatics();
+				break;
+			}
+		}
+		if (--stepsUntilReorder <= 0) {
+			reorder();
+			stepsUntilReorder = REORDER_INTERVAL;
+		}
+
+		for (int i = 0; i < dynamicCount; ++i) {
+			dynamics[i].getShape().getBounds(bounds);
+			System.arraycopy(bounds, 0, dynamicBounds, 4 * i, 4);
+		}
+		// bodies move very little between steps, so the order is nearly
+		// sorted already and an insertion sort is close to linear
+		for (int k = 1; k < dynamicCount; ++k) {
+			int index = order[k];
+			double left = dynamicBounds[4 * index];
+			int l = k;
+			while (l > 0 && dynamicBounds[4 * order[l - 1]] > left) {
+				order[l] = order[l - 1];
+				--l;
+			}
+			order[l] = index;
+		}
+
+		for (int k = 0; k < dynamicCount; ++k) {
+			int i = order[k];
+			double xMin = dynamicBounds[4 * i], xMax = dynamicBounds[4 * i + 2];
+			double yMin = dynamicBounds[4 * i + 1], yMax = dynamicBounds[4 * i + 3];
+			// dynamic bodies to the right that start before this one ends
+			for (int l = k + 1; l < dynamicCount; ++l) {
+				int j = order[l];
+				if (dynamicBounds[4 * j] > xMax) {
+					break;
+				}
+				if (dynamicBounds[4 * j + 1] <= yMax
+						&& dynamicBounds[4 * j + 3] >= yMin
+						&& (solid(dynamics[i]) || solid(dynamics[j]))) {
+					// keep the same order within the pair however the
+					// bodies are stored, oldest body first
+					if (dynamics[i].id() < dynamics[j].id()) {
+						collide(dynamics[i], dynamicIndices[i], dynamics[j],
+								dynamicIndices[j], amount, due, interval);
+					} else {
+						collide(dynamics[j], dynamicIndices[j], dynamics[i],
+								dynamicIndices[i], amount, due, interval);
+					}
+				}
+			}
+			if (staticCount == 0) {
+				continue;
+			}
+			// a kinematic body can only be seen by fixed sensors
+			boolean solid = solid(dynamics[i]);
+			// fixed bodies in the cells this one covers
+			int c0 = column(xMin), c1 = column(xMax);
+			int r0 = row(yMin), r1 = row(yMax);
+			if (c0 == c1 && r0 == r1) {
+				int cell = r0 * columns + c0;
+				for (int n = cellStarts[cell]; n < cellStarts[cell + 1]; ++n) {
+					collideStatic(i, cellStatics[n], solid, amount, due,
+							interval);
+				}
+			} else {
+				int count = gatherStatics(c0, r0, c1, r1);
+				for (int n = 0; n < count; ++n) {
+					collideStatic(i, nearby[n], solid, amount, due, interval);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gather the fixed bodies in a block of cells into the nearby array,
+	 * each once and in the sorted order, so they are met in the same order
+	 * as the bodies in a single cell.
+	 *
+	 * @return how many there are
+	 */
+	private int gatherStatics(int c0, int r0, int c1, int r1) {
+		if (++gathering == 0) {
+			// the count wrapped around, so forget every earlier gathering
+			Arrays.fill(gathered, 0);
+			gathering = 1;
+		}
+		int count = 0;
+		for (int r = r0; r <= r1; ++r) {
+			for (int c = c0; c <= c1; ++c) {
+				int cell = r * columns + c;
+				for (int n = cellStarts[cell]; n < cellStarts[cell + 1]; ++n) {
+					int s = cellStatics[n];
+					if (gathered[s] != gathering) {
+						gathered[s] = gathering;
+						nearby[count++] = s;
+					}
+				}
+			}
+		}
+		Arrays.sort(nearby, 0, count);
+		return count;
+	}
+
+	/**
+	 * Collide a dynamic body with a fixed body, if their boxes overlap.
+	 */
+	private void collideStatic(int i, int s, boolean solid, double amount,
+			boolean[] due, int[] interval) {
+		if (staticBounds[4 * s] <= dynamicBounds[4 * i + 2]
+				&& staticBounds[4 * s + 2] >= dynamicBounds[4 * i]
+				&& staticBounds[4 * s + 1] <= dynamicBounds[4 * i + 3]
+				&& staticBounds[4 * s + 3] >= dynamicBounds[4 * i + 1]
+				&& (solid || statics[s].isSensor())) {
+			collide(dynamics[i], dynamicIndices[i], statics[s], -1, amount,
+					due, interval);
+		}
+	}
+
+	/**
+	 * Tells whether a dynamic body needs to be tested against fixed and
+	 * kinematic bodies, that is whether it can be pushed or is a sensor.
+	 */
+	private static boolean solid(Body b) {
+		return !b.isKinematic() || b.isSensor();
+	}
+
+	/**
+	 * Push apart every pair of bodies that overlap, for position-based
+	 * stepping. The pairs are found and filtered the same way as by
+	 * <code>collide</code>, but are handed to a position solver instead of
+	 * being collided.
+	 *
+	 * @param solver
+	 *            the solver that pushes the pairs apart
+	 */
+	void project(PositionSolver solver) {
+		projecting = solver;
+		try {
+			collide(0, null, null);
+		} finally {
+			projecting = null;
+		}
+	}
+
+	/**
+	 * Collide a pair of bodies found by the broad phase. Every pair that
+	 * reaches the narrow phase goes through here, so pairs that are filtered
+	 * out by their masks or types are dropped before any shape is tested.
+	 * Pairs that were apart last time are first checked against the axis that
+	 * separated them then. Each body comes with its index among all the
+	 * bodies, or -1 for a fixed body.
+	 */
+	private void collide(Body b1, int i1, Body b2, int i2, double amount,
+			boolean[] due, int[] interval) {
+		// fixed bodies are never stepped, so only the other body counts
+		if (due != null && !due[i1] && (i2 < 0 || !due[i2])) {
+			return;
+		}
+		if (!b1.canCollide(b2) || !interacts(b1.getType(), b2.getType())) {
+			return;
+		}
+		boolean sensing = b1.isSensor() || b2.isSensor();
+		if (sensing && b1.isSensor() == b2.isSensor()) {
+			return;
+		}
+		if (separations.separated(b1, b2)) {
+			return;
+		}
+		if (sensing) {
+			if (separations.overlaps(b1, b2, contact)) {
+				if (b1.isSensor()) {
+					sensorOverlaps.add(b1, b2);
+				} else {
+					sensorOverlaps.add(b2, b1);
+				}
+			}
+			return;
+		}
+		boolean touching = projecting != null ? projecting.contact(b1, b2,
+				contact) : b1.collide(b2, contact, amount);
+		separations.update(b1, b2, touching);
+		if (due != null && touching && i2 >= 0) {
+			// the slower body catches up now and keeps pace with the faster
+			int faster = Math.min(interval[i1], interval[i2]);
+			interval[i1] = faster;
+			interval[i2] = faster;
+			due[i1] = true;
+			due[i2] = true;
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package simulation.engine;
+
+import java.awt.Graphics;
+import java.awt.Polygon;
+import java.awt.Shape;
+
+/**
+ * A rectangle that can collide with other shapes. A box is stored as its
+ * center, half of its width and height, and its rotation, which lets it
+ * collide with circles and other boxes without looping over vertices or
+ * edges. Collisions with other polygons go through an equivalent
+ * <code>CollisionPolygon</code>.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class CollisionBox extends CollisionShape {
+	private double centerX, centerY;
+	// half of the width and height
+	private double halfWidth, halfHeight;
+	private double rotation;
+	// cosine and sine of the rotation; the box's width is along (cos, sin)
+	// and its height along (-sin, cos)
+	private double cos, sin;
+	// the same box as a polygon, made the first time it is needed
+	private CollisionPolygon polygon;
+	// whether the polygon has been moved to where the box is
+	private boolean polygonPlaced;
+
+	/**
+	 * Create a box.
+	 *
+	 * @param center
+	 *            the center
+	 * @param halfWidth
+	 *            half of the width
+	 * @param halfHeight
+	 *            half of the height
+	 * @param rotation
+	 *            the angle the width is turned from the x axis
+	 */
+	public CollisionBox(Vector center, double halfWidth, double halfHeight,
+			double rotation) {
+		this.centerX = center.getX();
+		this.centerY = center.getY();
+		this.halfWidth = Math.abs(halfWidth);
+		this.halfHeight = Math.abs(halfHeight);
+		setRotation(rotation);
+	}
+
+	/**
+	 * Create a box that is lined up with the axes and has two opposite corners
+	 * at the given points.
+	 *
+	 * @param corner1
+	 *            one corner
+	 * @param corner2
+	 *            the opposite corner
+	 */
+	public CollisionBox(Vector corner1, Vector corner2) {
+		this(corner1.add(corner2).divide(2), (corner2.getX() - corner1
+				.getX()) / 2, (corner2.getY() - corner1.getY()) / 2, 0);
+	}
+
+	private void setRotation(double rotation) {
+		this.rotation = rotation;
+		cos = Math.cos(rotation);
+		sin = Math.sin(rotation);
+		polygonPlaced = false;
+	}
+
+	/**
+	 * Get half of the box's width.
+	 *
+	 * @return half the width
+	 */
+	public double halfWidth() {
+		return halfWidth;
+	}
+
+	/**
+	 * Get half of the box's height.
+	 *
+	 * @return half the height
+	 */
+	public double halfHeight() {
+		return halfHeight;
+	}
+
+	/**
+	 * Get the cosine of the rotation.
+	 *
+	 * @return the cosine
+	 */
+	double cos() {
+		return cos;
+	}
+
+	/**
+	 * Get the sine of the rotation.
+	 *
+	 * @return the sine
+	 */
+	double sin() {
+		return sin;
+	}
+
+	/**
+	 * Get the box as a polygon with the same four corners. The same polygon
+	 * is returned every time, and is moved to where the box is when needed.
+	 *
+	 * @return the equivalent polygon
+	 */
+	public CollisionPolygon asPolygon() {
+		if (polygon == null) {
+			// go around the corners of the unrotated box: (+,+), (-,+), (-,-),
+			// (+,-)
+			polygon = new CollisionPolygon(new Vector[] {
+					new Vector(halfWidth, halfHeight),
+					new Vector(-halfWidth, halfHeight),
+					new Vector(-halfWidth, -halfHeight),
+					new Vector(halfWidth, -halfHeight) });
+		}
+		if (!polygonPlaced) {
+			polygon.place(centerX, centerY, rotation);
+			polygonPlaced = true;
+		}
+		return polygon;
+	}
+
+	@Override
+	public double area() {
+		return 4 * halfWidth * halfHeight;
+	}
+
+	@Override
+	public Vector center() {
+		return new Vector(centerX, centerY);
+	}
+
+	@Override
+	public double centerX() {
+		return centerX;
+	}
+
+	@Override
+	public double centerY() {
+		return centerY;
+	}
+
+	@Override
+	public double momentOfInertia() {
+		return area() * (halfWidth * halfWidth + halfHeight * halfHeight) / 3;
+	}
+
+	@Override
+	public double rotation() {
+		return rotation;
+	}
+
+	@Override
+	public boolean contains(Vector point) {
+		double dx = point.getX() - centerX;
+		double dy = point.getY() - centerY;
+		return Math.abs(dx * cos + dy * sin) < halfWidth
+				&& Math.abs(dy * cos - dx * sin) < halfHeight;
+	}
+
+	@Override
+	public void getBounds(double[] bounds) {
+		double extentX = halfWidth * Math.abs(cos) + halfHeight
+				* Math.abs(sin);
+		double extentY = halfWidth * Math.abs(sin) + halfHeight
+				* Math.abs(cos);
+		bounds[0] = centerX - extentX;
+		bounds[1] = centerY - extentY;
+		bounds[2] = centerX + extentX;
+		bounds[3] = centerY + extentY;
+	}
+
+	/**
+	 * Get how far the box reaches along an axis, from its center.
+	 *
+	 * @param axisX
+	 *            the x coordinate of the unit axis
+	 * @param axisY
+	 *            the y coordinate of the unit axis
+	 * @return half the length of the box's projection onto the axis
+	 */
+	private double extent(double axisX, double axisY) {
+		return halfWidth * Math.abs(axisX * cos + axisY * sin) + halfHeight
+				* Math.abs(axisY * cos - axisX * sin);
+	}
+
+	@Override
+	public void project(double axisX, double axisY, double[] range) {
+		double c = centerX * axisX + centerY * axisY;
+		double e = extent(axisX, axisY);
+		range[0] = c - e;
+		range[1] = c + e;
+	}
+
+	@Override
+	int numFaceNormals() {
+		return 2;
+	}
+
+	@Override
+	void faceNormal(int i, double[] normal) {
+		normal[0] = i == 0 ? cos : -sin;
+		normal[1] = i == 0 ? sin : cos;
+	}
+
+	@Override
+	boolean face(double dirX, double dirY, double[] face) {
+		// the direction in the box's frame picks the side
+		double localX = dirX * cos + dirY * sin;
+		double localY = dirY * cos - dirX * sin;
+		// the middle of the side and the offset from it to the ends, locally
+		double midX, midY, endX, endY;
+		if (Math.abs(localX) >= Math.abs(localY)) {
+			midX = localX < 0 ? -halfWidth : halfWidth;
+			midY = 0;
+			endX = 0;
+			endY = halfHeight;
+		} else {
+			midX = 0;
+			midY = localY < 0 ? -halfHeight : halfHeight;
+			endX = halfWidth;
+			endY = 0;
+		}
+		face[0] = centerX + (midX - endX) * cos - (midY - endY) * sin;
+		face[1] = centerY + (midX - endX) * sin + (midY - endY) * cos;
+		face[2] = centerX + (midX + endX) * cos - (midY + endY) * sin;
+		face[3] = centerY + (midX + endX) * sin + (midY + endY) * cos;
+		double length = Math.abs(midX + midY);
+		face[4] = (midX * cos - midY * sin) / length;
+		face[5] = (midX * sin + midY * cos) / length;
+		return true;
+	}
+
+	@Override
+	public boolean collideBox(CollisionBox other, ContactBuffer out) {
+		out.clear();
+		// from the other's center to this one's
+		double dx = centerX - other.centerX;
+		double dy = centerY - other.centerY;
+		// Separating axis test on the four face normals. Keep the axis with
+		// the least overlap; the normal points from the other box to this one.
+		double best = Double.POSITIVE_INFINITY;
+		double normalX = 0, normalY = 0;
+		boolean thisFace = true;
+		for (int axis = 0; axis < 4; ++axis) {
+			double axisX, axisY;
+			switch (axis) {
+			case 0:
+				axisX = cos;
+				axisY = sin;
+				break;
+			case 1:
+				axisX = -sin;
+				axisY = cos;
+				break;
+			case 2:
+				axisX = other.cos;
+				axisY = other.sin;
+				break;
+			default:
+				axisX = -other.sin;
+				axisY = other.cos;
+				break;
+			}
+			double dist = dx * axisX + dy * axisY;
+			double overlap = extent(axisX, axisY)
+					+ other.extent(axisX, axisY) - Math.abs(dist);
+			if (overlap <= 0) {
+				return false;
+			}
+			if (overlap < best) {
+				best = overlap;
+				normalX = dist < 0 ? -axisX : axisX;
+				normalY = dist < 0 ? -axisY : axisY;
+				thisFace = axis < 2;
+			}
+		}
+		// the contact is the corner that went deepest into the other box
+		double contactX, contactY;
+		if (thisFace) {
+			contactX = other.supportX(normalX, normalY);
+			contactY = other.supportY(normalX, normalY);
+		} else {
+			contactX = supportX(-normalX, -normalY);
+			contactY = supportY(-normalX, -normalY);
+		}
+		out.set(contactX, contactY, normalX * best, normalY * best);
+		return true;
+	}
+
+	/**
+	 * Get the x coordinate of the point of the box that is furthest in a
+	 * direction. If a side faces exactly that way, its middle is used.
+	 */
+	private double supportX(double dirX, double dirY) {
+		return centerX + Math.signum(dirX * cos + dirY * sin)
+				* halfWidth * cos - Math.signum(dirY * cos - dirX * sin)
+				* halfHeight * sin;
+	}
+
+	/**
+	 * Get the y coordinate of the point of the box that is furthest in a
+	 * direction.
+	 */
+	private double supportY(double dirX, double dirY) {
+		return centerY + Math.signum(dirX * cos + dirY * sin)
+				* halfWidth * sin + Math.signum(dirY * cos - dirX * sin)
+				* halfHeight * cos;
+	}
+
+	@Override
+	public boolean collideCircle(CollisionCircle other, ContactBuffer out) {
+		out.clear();
+		// the circle's center relative to the box, in the box's frame
+		double dx = other.centerX() - centerX;
+		double dy = other.centerY() - centerY;
+		double localX = dx * cos + dy * sin;
+		double localY = dy * cos - dx * sin;
+		double radius = other.radius();
+		// translation and contact in the box's frame
+		double transX, transY, contactX, contactY;
+		if (Math.abs(localX) <= halfWidth && Math.abs(localY) <= halfHeight) {
+			// the center is inside, or on a side where there is no direction
+			// to the closest point, so push out through the closest side
+			double outX = halfWidth - Math.abs(localX);
+			double outY = halfHeight - Math.abs(localY);
+			if (outX < outY) {
+				double side = localX < 0 ? -1 : 1;
+				transX = -side * (outX + radius);
+				transY = 0;
+				contactX = side * halfWidth;
+				contactY = localY;
+			} else {
+				double side = localY < 0 ? -1 : 1;
+				transX = 0;
+				transY = -side * (outY + radius);
+				contactX = localX;
+				contactY = side * halfHeight;
+			}
+		} else {
+			// the closest point on the box to the center
+			contactX = Math.max(-halfWidth, Math.min(halfWidth, localX));
+			contactY = Math.max(-halfHeight, Math.min(halfHeight, localY));
+			double offX = localX - contactX, offY = localY - contactY;
+			double distSquared = offX * offX + offY * offY;
+			if (distSquared >= radius * radius) {
+				return false;
+			}
+			double dist = Math.sqrt(distSquared);
+			// the box moves away from the circle
+			transX = -offX / dist * (radius - dist);
+			transY = -offY / dist * (radius - dist);
+		}
+		// back to the world's frame
+		out.set(centerX + contactX * cos - contactY * sin, centerY + contactX
+				* sin + contactY * cos, transX * cos - transY * sin, transX
+				* sin + transY * cos);
+		return true;
+	}
+
+	@Override
+	public boolean collidePolygon(CollisionPolygon other, ContactBuffer out) {
+		return asPolygon().collidePolygon(other, out);
+	}
+
+	@Override
+	public void rotate(double angle) {
+		setRotation(rotation + angle);
+	}
+
+	@Override
+	public void move(Vector movement) {
+		move(movement.getX(), movement.getY());
+	}
+
+	@Override
+	public void move(double dx, double dy) {
+		centerX += dx;
+		centerY += dy;
+		polygonPlaced = false;
+	}
+
+	@Override
+	public void moveRotating(double angle, Vector movement) {
+		moveRotating(angle, movement.getX(), movement.getY());
+	}
+
+	@Override
+	public void moveRotating(double angle, double dx, double dy) {
+		centerX += dx;
+		centerY += dy;
+		setRotation(rotation + angle);
+	}
+
+	@Override
+	public CollisionShape clone() {
+		return new CollisionBox(center(), halfWidth, halfHeight, rotation);
+	}
+
+	@Override
+	public String toString() {
+		return "(center " + center() + ", half size " + halfWidth + " by "
+				+ halfHeight + ", rotation " + rotation + ")";
+	}
+
+	@Override
+	public void fill(Graphics g) {
+		// not through asPolygon, which may be in use by the simulation
+		Polygon corners = (Polygon) toShape();
+		g.fillPolygon(corners);
+	}
+
+	@Override
+	public Shape toShape() {
+		Polygon result = new Polygon();
+		double wx = halfWidth * cos, wy = halfWidth * sin;
+		double hx = -halfHeight * sin, hy = halfHeight * cos;
+		double x = centerX, y = centerY;
+		result.addPoint((int) (x + wx + hx), (int) (y + wy + hy));
+		result.addPoint((int) (x - wx + hx), (int) (y - wy + hy));
+		result.addPoint((int) (x - wx - hx), (int) (y - wy - hy));
+		result.addPoint((int) (x + wx - hx), (int) (y + wy - hy));
+		return result;
+	}
+}
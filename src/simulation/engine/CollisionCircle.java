@@ -12,8 +12,13 @@ import java.awt.geom.Ellipse2D;
  * 
  */
 public final class CollisionCircle extends CollisionShape {
+	/**
+	 * How many circles <code>overlapping</code> tests at once.
+	 */
+	public static final int BLOCK_WIDTH = 4;
+
 	private double radius;
-	private Vector center;
+	private double centerX, centerY;
 	private double area;
 	// how much it is rotated. This is for drawing and spring-related purposes.
 	private double rotation;
@@ -29,7 +34,8 @@ public final class CollisionCircle extends CollisionShape {
 	 */
 	public CollisionCircle(double radius, Vector center) {
 		this.radius = radius;
-		this.center = center;
+		this.centerX = center.getX();
+		this.centerY = center.getY();
 		this.area = Math.PI * radius * radius;
 		// integral from 0 to r of 2*pi*r^3
 		// 2*pi*r^3 is the circumference of the circle at that radius times r^2
@@ -47,7 +53,17 @@ public final class CollisionCircle extends CollisionShape {
 
 	@Override
 	public Vector center() {
-		return center;
+		return new Vector(centerX, centerY);
+	}
+
+	@Override
+	public double centerX() {
+		return centerX;
+	}
+
+	@Override
+	public double centerY() {
+		return centerY;
 	}
 
 	@Override
@@ -62,7 +78,19 @@ public final class CollisionCircle extends CollisionShape {
 
 	@Override
 	public void move(Vector movement) {
-		center = center.add(movement);
+		move(movement.getX(), movement.getY());
+	}
+
+	@Override
+	public void move(double dx, double dy) {
+		centerX += dx;
+		centerY += dy;
+	}
+
+	@Override
+	public void moveRotating(double angle, double dx, double dy) {
+		rotate(angle);
+		move(dx, dy);
 	}
 
 	@Override
@@ -75,65 +103,169 @@ public final class CollisionCircle extends CollisionShape {
 		return momentOfInertia;
 	}
 
+	@Override
+	public void getBounds(double[] bounds) {
+		bounds[0] = centerX - radius;
+		bounds[1] = centerY - radius;
+		bounds[2] = centerX + radius;
+		bounds[3] = centerY + radius;
+	}
+
+	@Override
+	public void project(double axisX, double axisY, double[] range) {
+		double c = centerX * axisX + centerY * axisY;
+		range[0] = c - radius;
+		range[1] = c + radius;
+	}
+
 	@Override
 	public boolean contains(Vector point) {
-		return point.subtract(center).magnitude() < radius;
+		double dx = point.getX() - centerX, dy = point.getY() - centerY;
+		return dx * dx + dy * dy < radius * radius;
 	}
 
 	@Override
-	public CollisionResult collideCircle(CollisionCircle other) {
-		Vector change = center.subtract(other.center);
-		double dist = change.magnitude();
+	public boolean collideCircle(CollisionCircle other, ContactBuffer out) {
+		out.clear();
+		double dx = centerX - other.centerX;
+		double dy = centerY - other.centerY;
 		double radii = radius + other.radius;
+		// compare squares so the square root is only taken on a hit
+		double distSquared = dx * dx + dy * dy;
+		if (distSquared >= radii * radii) {
+			return false;
+		}
+		double dist = Math.sqrt(distSquared);
 		// how much must they be move apart?
 		double mag = radii - dist;
-		if (mag <= 0) {
-			return null;
-		}
-		Vector trans = change.withMagnitude(mag);
 		// the contact point is the point in the middle of the overlap
-		Vector relContact = change
-				.withMagnitude((other.radius + dist - radius) / 2);
-		return new CollisionResult(other.center.add(relContact), trans);
+		double toContact = (other.radius + dist - radius) / 2;
+		if (dist == 0) {
+			// concentric; push them apart along x
+			out.set(other.centerX + toContact, other.centerY, mag, 0);
+		} else {
+			out.set(other.centerX + dx / dist * toContact, other.centerY + dy
+					/ dist * toContact, dx / dist * mag, dy / dist * mag);
+		}
+		return true;
+	}
+
+	/**
+	 * Find which circles in a run of packed circles overlap a given circle.
+	 * The run is tested in blocks of <code>BLOCK_WIDTH</code> circles using
+	 * squared distances, with a single branch per block, so the loop has no
+	 * square roots and most blocks are passed over with one test. This is
+	 * plain scalar code; the JIT does not turn it into vector instructions,
+	 * since the hits are written out one at a time. The indices that overlap
+	 * are written to <code>hits</code>.
+	 * 
+	 * @param x
+	 *            the x coordinate of the circle's center
+	 * @param y
+	 *            the y coordinate of the circle's center
+	 * @param r
+	 *            the circle's radius
+	 * @param xs
+	 *            the x coordinates of the other circles' centers
+	 * @param ys
+	 *            the y coordinates of the other circles' centers
+	 * @param radii
+	 *            the other circles' radii
+	 * @param from
+	 *            the first index of the run (inclusive)
+	 * @param to
+	 *            the last index of the run (exclusive)
+	 * @param hits
+	 *            where to write the indices that overlap; must have room for
+	 *            <code>to - from</code> entries
+	 * @return how many indices were written to <code>hits</code>
+	 */
+	public static int overlapping(double x, double y, double r, double[] xs,
+			double[] ys, double[] radii, int from, int to, int[] hits) {
+		int count = 0;
+		int k = from;
+		for (; k + BLOCK_WIDTH <= to; k += BLOCK_WIDTH) {
+			// the gap is negative when the circles overlap
+			double dx0 = xs[k] - x, dy0 = ys[k] - y, r0 = radii[k] + r;
+			double dx1 = xs[k + 1] - x, dy1 = ys[k + 1] - y, r1 = radii[k + 1]
+					+ r;
+			double dx2 = xs[k + 2] - x, dy2 = ys[k + 2] - y, r2 = radii[k + 2]
+					+ r;
+			double dx3 = xs[k + 3] - x, dy3 = ys[k + 3] - y, r3 = radii[k + 3]
+					+ r;
+			double gap0 = dx0 * dx0 + dy0 * dy0 - r0 * r0;
+			double gap1 = dx1 * dx1 + dy1 * dy1 - r1 * r1;
+			double gap2 = dx2 * dx2 + dy2 * dy2 - r2 * r2;
+			double gap3 = dx3 * dx3 + dy3 * dy3 - r3 * r3;
+			// non-short-circuit, so most blocks only take this one branch
+			if (gap0 < 0 | gap1 < 0 | gap2 < 0 | gap3 < 0) {
+				if (gap0 < 0)
+					hits[count++] = k;
+				if (gap1 < 0)
+					hits[count++] = k + 1;
+				if (gap2 < 0)
+					hits[count++] = k + 2;
+				if (gap3 < 0)
+					hits[count++] = k + 3;
+			}
+		}
+		// whatever is left over
+		for (; k < to; ++k) {
+			double dx = xs[k] - x, dy = ys[k] - y, radiiSum = radii[k] + r;
+			if (dx * dx + dy * dy < radiiSum * radiiSum) {
+				hits[count++] = k;
+			}
+		}
+		return count;
 	}
 
 	@Override
-	public CollisionResult collidePolygon(CollisionPolygon other) {
+	public boolean collidePolygon(CollisionPolygon other, ContactBuffer out) {
 		// collide other with this, then invert if there is a collision
-		CollisionResult trans = other.collideCircle(this);
-		if (trans == null)
-			return null;
-		return trans.invert();
+		if (!other.collideCircle(this, out))
+			return false;
+		out.invert();
+		return true;
+	}
+
+	@Override
+	public boolean collideBox(CollisionBox other, ContactBuffer out) {
+		if (!other.collideCircle(this, out))
+			return false;
+		out.invert();
+		return true;
 	}
 
 	@Override
 	public CollisionShape clone() {
-		return new CollisionCircle(radius, center);
+		CollisionCircle clone = new CollisionCircle(radius, center());
+		clone.rotation = rotation;
+		return clone;
 	}
 
 	@Override
 	public String toString() {
-		return "(center " + center + ", radius " + radius + ")";
+		return "(center " + center() + ", radius " + radius + ")";
 	}
 
 	@Override
 	public void fill(Graphics g) {
 		int diam = (int) (2 * radius);
 		// first draw the circle
-		g.fillOval((int) (center.getX() - radius), (int) (center.getY() - radius),
-				diam, diam);
+		g.fillOval((int) (centerX - radius), (int) (centerY - radius), diam,
+				diam);
 		g.setColor(Color.green);
 		// now draw a green line from the center to the edge based on rotation
-		g.drawLine((int) center.getX(), (int) center.getY(), (int) (center.getX() + Math
+		g.drawLine((int) centerX, (int) centerY, (int) (centerX + Math
 				.cos(rotation)
-				* radius), (int) (center.getY() + Math.sin(rotation) * radius));
+				* radius), (int) (centerY + Math.sin(rotation) * radius));
 	}
 
 	@Override
 	public Shape toShape() {
 		double diam = radius * 2;
-		return new Ellipse2D.Double(center.getX() - radius, center.getY() - radius,
-				diam, diam);
+		return new Ellipse2D.Double(centerX - radius, centerY - radius, diam,
+				diam);
 	}
 
 	/*
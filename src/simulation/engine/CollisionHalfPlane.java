@@ -0,0 +1,279 @@
+package simulation.engine;
+
+import java.awt.Graphics;
+import java.awt.Shape;
+
+/**
+ * An infinite half-plane, meant for walls and floors that do not move. The
+ * plane is solid on one side of a line; testing a shape against it only takes
+ * one dot product per vertex. Because an infinite shape cannot be drawn or
+ * weighed, the half-plane also has an outline polygon that is used for
+ * drawing and to give it an area and a moment of inertia.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class CollisionHalfPlane extends CollisionShape {
+	// a point on the plane's boundary
+	private Vector point;
+	// unit normal pointing out of the plane, into the open side
+	private double normalX, normalY;
+	// what is drawn in place of the plane
+	private CollisionPolygon outline;
+	private double rotation;
+
+	/**
+	 * Create a half-plane whose boundary goes through a point.
+	 *
+	 * @param point
+	 *            a point on the boundary
+	 * @param normal
+	 *            a vector pointing from the boundary into the open side; it
+	 *            does not need to be a unit vector
+	 * @param outline
+	 *            the polygon that is drawn for the plane
+	 */
+	public CollisionHalfPlane(Vector point, Vector normal,
+			CollisionPolygon outline) {
+		if (normal.magnitude() == 0) {
+			throw new IllegalArgumentException(
+					"CollisionHalfPlane must have a non-zero normal.");
+		}
+		this.point = point;
+		Vector unit = normal.unit();
+		normalX = unit.getX();
+		normalY = unit.getY();
+		this.outline = outline;
+	}
+
+	/**
+	 * Get a point on the plane's boundary.
+	 *
+	 * @return the point
+	 */
+	public Vector point() {
+		return point;
+	}
+
+	/**
+	 * Get the unit normal, which points from the boundary into the open side.
+	 *
+	 * @return the normal
+	 */
+	public Vector normal() {
+		return new Vector(normalX, normalY);
+	}
+
+	/**
+	 * Get the signed distance from the boundary to a point, which is positive
+	 * on the open side and negative inside the plane.
+	 *
+	 * @param x
+	 *            the point's x coordinate
+	 * @param y
+	 *            the point's y coordinate
+	 * @return the signed distance
+	 */
+	private double distance(double x, double y) {
+		return (x - point.getX()) * normalX + (y - point.getY()) * normalY;
+	}
+
+	@Override
+	public boolean contains(Vector p) {
+		return distance(p.getX(), p.getY()) < 0;
+	}
+
+	@Override
+	public boolean collideCircle(CollisionCircle other, ContactBuffer out) {
+		out.clear();
+		double cx = other.centerX(), cy = other.centerY();
+		double dist = distance(cx, cy);
+		double depth = other.radius() - dist;
+		if (depth <= 0) {
+			return false;
+		}
+		// the contact point is in the middle of the overlap
+		double toContact = dist + depth / 2;
+		// the plane moves away from the circle
+		out.set(cx - normalX * toContact, cy - normalY * toContact, -normalX
+				* depth, -normalY * depth);
+		return true;
+	}
+
+	@Override
+	public boolean collidePolygon(CollisionPolygon other, ContactBuffer out) {
+		out.clear();
+		// find the deepest vertex
+		int deepest = -1;
+		double min = 0;
+		for (int i = 0; i < other.numVertices(); ++i) {
+			double dist = distance(other.vertexX(i), other.vertexY(i));
+			if (dist < min) {
+				min = dist;
+				deepest = i;
+			}
+		}
+		if (deepest < 0) {
+			return false;
+		}
+		out.set(other.vertexX(deepest), other.vertexY(deepest), normalX * min,
+				normalY * min);
+		return true;
+	}
+
+	@Override
+	public boolean collideBox(CollisionBox other, ContactBuffer out) {
+		out.clear();
+		// the deepest corner is the one furthest against the normal
+		double along = other.halfWidth() * other.cos();
+		double across = other.halfWidth() * other.sin();
+		double upX = -other.halfHeight() * other.sin();
+		double upY = other.halfHeight() * other.cos();
+		double w = along * normalX + across * normalY > 0 ? -1 : 1;
+		double h = upX * normalX + upY * normalY > 0 ? -1 : 1;
+		double x = other.centerX() + w * along + h * upX;
+		double y = other.centerY() + w * across + h * upY;
+		double min = distance(x, y);
+		if (min >= 0) {
+			return false;
+		}
+		out.set(x, y, normalX * min, normalY * min);
+		return true;
+	}
+
+	@Override
+	int numFaceNormals() {
+		return 1;
+	}
+
+	@Override
+	void faceNormal(int i, double[] normal) {
+		normal[0] = normalX;
+		normal[1] = normalY;
+	}
+
+	/**
+	 * The plane's side is its boundary, which has no ends; both ends are set
+	 * to the point on the boundary.
+	 */
+	@Override
+	boolean face(double dirX, double dirY, double[] face) {
+		face[0] = face[2] = point.getX();
+		face[1] = face[3] = point.getY();
+		face[4] = normalX;
+		face[5] = normalY;
+		return true;
+	}
+
+	@Override
+	public void project(double axisX, double axisY, double[] range) {
+		// the plane only has a finite end along its own normal
+		double along = axisX * normalX + axisY * normalY;
+		double across = axisX * normalY - axisY * normalX;
+		double boundary = point.getX() * axisX + point.getY() * axisY;
+		range[0] = Double.NEGATIVE_INFINITY;
+		range[1] = Double.POSITIVE_INFINITY;
+		if (across == 0 && along > 0) {
+			range[1] = boundary;
+		} else if (across == 0 && along < 0) {
+			range[0] = boundary;
+		}
+	}
+
+	@Override
+	public void getBounds(double[] bounds) {
+		bounds[0] = Double.NEGATIVE_INFINITY;
+		bounds[1] = Double.NEGATIVE_INFINITY;
+		bounds[2] = Double.POSITIVE_INFINITY;
+		bounds[3] = Double.POSITIVE_INFINITY;
+		// only a plane lined up with an axis has a finite side
+		if (normalX == 0) {
+			if (normalY > 0) {
+				bounds[3] = point.getY();
+			} else {
+				bounds[1] = point.getY();
+			}
+		} else if (normalY == 0) {
+			if (normalX > 0) {
+				bounds[2] = point.getX();
+			} else {
+				bounds[0] = point.getX();
+			}
+		}
+	}
+
+	@Override
+	void getOutlineBounds(double[] bounds) {
+		outline.getBounds(bounds);
+	}
+
+	@Override
+	public double area() {
+		return outline.area();
+	}
+
+	@Override
+	public Vector center() {
+		return outline.center();
+	}
+
+	@Override
+	public double centerX() {
+		return outline.centerX();
+	}
+
+	@Override
+	public double centerY() {
+		return outline.centerY();
+	}
+
+	@Override
+	public double momentOfInertia() {
+		return outline.momentOfInertia();
+	}
+
+	@Override
+	public double rotation() {
+		return rotation;
+	}
+
+	@Override
+	public void rotate(double angle) {
+		// turn around the outline's center, like the outline does
+		point = center().add(point.subtract(center()).rotate(angle));
+		Vector normal = normal().rotate(angle);
+		normalX = normal.getX();
+		normalY = normal.getY();
+		outline.rotate(angle);
+		rotation += angle;
+	}
+
+	@Override
+	public void move(Vector movement) {
+		point = point.add(movement);
+		outline.move(movement);
+	}
+
+	@Override
+	public CollisionShape clone() {
+		CollisionHalfPlane clone = new CollisionHalfPlane(point, normal(),
+				(CollisionPolygon) outline.clone());
+		clone.rotation = rotation;
+		return clone;
+	}
+
+	@Override
+	public String toString() {
+		return "(point " + point + ", normal " + normal() + ")";
+	}
+
+	@Override
+	public void fill(Graphics g) {
+		outline.fill(g);
+	}
+
+	@Override
+	public Shape toShape() {
+		return outline.toShape();
+	}
+}
@@ -7,22 +7,26 @@ import java.awt.geom.PathIterator;
 import java.util.ArrayList;
 
 /**
- * A polygon that can collide with other shapes.
+ * A polygon that can collide with other shapes. The polygon's outline, area
+ * and moment of inertia are kept in a template that it may share with other
+ * polygons; the polygon itself only keeps where it is, how far it has turned
+ * and where its vertices are now.
  * 
  * @author Jacob Taylor
  * 
  */
 public final class CollisionPolygon extends CollisionShape {
-	// original angles of the vertices
-	private double[] origAngles;
-	// original distances of the vertices from the center
-	private double[] origMagnitudes;
+	// the outline, which may be shared
+	private PolygonTemplate template;
 	// the current positions of the vertices
-	private Vector[] vertices;
-	private Vector center;
-	private double momentOfInertia;
-	private double area;
+	private double[] xs, ys;
+	private double centerX, centerY;
 	private double rotation;
+	// the cosine and sine of the rotation
+	private double cos = 1, sin;
+	private double xMin, yMin, xMax, yMax;
+	// whether the bounding box must be worked out again
+	private boolean boundsStale = true;
 
 	/**
 	 * Create a polygon from the given vertices
@@ -31,13 +35,33 @@ public final class CollisionPolygon extends CollisionShape {
 	 *            the vertices
 	 */
 	public CollisionPolygon(Vector[] vertices) {
-		if (vertices.length < 3) {
-			throw new IllegalArgumentException(
-					"CollisionPolygon must have at least 3 vertices.");
-		}
-		this.vertices = vertices.clone();
+		this(new PolygonTemplate(vertices));
+	}
 
-		setValues();
+	/**
+	 * Create a polygon from a template, with its center where the template's
+	 * vertices were centered.
+	 */
+	private CollisionPolygon(PolygonTemplate template) {
+		this(template, new Vector(template.originX, template.originY), 0);
+	}
+
+	/**
+	 * Create a polygon from a template, sharing the template's outline.
+	 * 
+	 * @param template
+	 *            the template
+	 * @param center
+	 *            where the polygon's center is
+	 * @param rotation
+	 *            how far the polygon is turned from the template
+	 */
+	public CollisionPolygon(PolygonTemplate template, Vector center,
+			double rotation) {
+		this.template = template;
+		xs = new double[template.numVertices()];
+		ys = new double[template.numVertices()];
+		place(center.getX(), center.getY(), rotation);
 	}
 
 	/**
@@ -47,6 +71,13 @@ public final class CollisionPolygon extends CollisionShape {
 	 *            the polygon to get the points from
 	 */
 	public CollisionPolygon(Polygon poly) {
+		this(new PolygonTemplate(points(poly)));
+	}
+
+	/**
+	 * Get the points of a <code>java.awt.Polygon</code>.
+	 */
+	private static Vector[] points(Polygon poly) {
 		ArrayList<Vector> points = new ArrayList<Vector>();
 		PathIterator iter = poly.getPathIterator(null);
 		double[] coords = new double[6];
@@ -55,8 +86,7 @@ public final class CollisionPolygon extends CollisionShape {
 			points.add(new Vector(coords[0], coords[1]));
 			iter.next();
 		}
-		vertices = points.toArray(new Vector[0]);
-		setValues();
+		return points.toArray(new Vector[points.size()]);
 	}
 	
 	/**
@@ -75,13 +105,23 @@ public final class CollisionPolygon extends CollisionShape {
 
 	}
 
+	/**
+	 * Get the template with the polygon's outline, which polygons of the same
+	 * shape can share.
+	 * 
+	 * @return the template
+	 */
+	public PolygonTemplate getTemplate() {
+		return template;
+	}
+
 	/**
 	 * Get the number of vertices.
 	 * 
 	 * @return how many vertices there are
 	 */
 	public int numVertices() {
-		return vertices.length;
+		return xs.length;
 	}
 
 	/**
@@ -92,17 +132,49 @@ public final class CollisionPolygon extends CollisionShape {
 	 * @return the vertex
 	 */
 	public Vector getVertex(int i) {
-		return vertices[i];
+		return new Vector(xs[i], ys[i]);
+	}
+
+	/**
+	 * Get the x coordinate of the vertex at a certain index.
+	 * 
+	 * @param i
+	 *            the vertex's index
+	 * @return the vertex's x coordinate
+	 */
+	public double vertexX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Get the y coordinate of the vertex at a certain index.
+	 * 
+	 * @param i
+	 *            the vertex's index
+	 * @return the vertex's y coordinate
+	 */
+	public double vertexY(int i) {
+		return ys[i];
 	}
 
 	@Override
 	public double area() {
-		return area;
+		return template.area();
 	}
 
 	@Override
 	public Vector center() {
-		return center;
+		return new Vector(centerX, centerY);
+	}
+
+	@Override
+	public double centerX() {
+		return centerX;
+	}
+
+	@Override
+	public double centerY() {
+		return centerY;
 	}
 
 	@Override
@@ -110,285 +182,366 @@ public final class CollisionPolygon extends CollisionShape {
 		return rotation;
 	}
 
-	/**
-	 * Calculate some properties of the polygon.
-	 */
-	private void setValues() {
-		// first, calculate area and center by adding stuff
-		double atotal = 0, xtotal = 0, ytotal = 0;
-		Vector v1, v2;
-		v1 = vertices[vertices.length - 1];
-		for (int i = 0; i < vertices.length; ++i, v1 = v2) {
-			v2 = vertices[i];
-			double v1x = v1.getX(), v1y = v1.getY();
-			double v2x = v2.getX(), v2y = v2.getY();
-			double temp = v1x * v2y - v2x * v1y;
-			atotal += temp;
-			xtotal += (v1x + v2x) * temp;
-			ytotal += (v1y + v2y) * temp;
+	@Override
+	public double momentOfInertia() {
+		return template.momentOfInertia();
+	}
 
+	@Override
+	public void getBounds(double[] bounds) {
+		if (boundsStale) {
+			refreshBounds();
 		}
-		area = .5 * Math.abs(atotal);
-		double coeff = 1 / (3 * atotal);
-		center = new Vector(coeff * xtotal, coeff * ytotal);
-		// next, calculate moment of inertia
-		double mtotal = 0;
-		v1 = vertices[vertices.length - 1];
-		for (int i = 0; i < vertices.length; ++i, v1 = v2) {
-			v2 = vertices[i];
-			Vector cv1 = v1.subtract(center);
-			Vector cv2 = v2.subtract(center);
-			// formula from http://www.gvu.gatech.edu/~jarek/demos/inertia/
-			mtotal += (cv2.dotProduct(cv1.quarterCounter()))
-					* (cv1.dotProduct(cv1) + cv1.dotProduct(cv2) + cv2
-							.dotProduct(cv2));
-		}
-		momentOfInertia = Math.abs(mtotal) / 12;
-		// finally, get angles and magnitudes
-		origAngles = new double[vertices.length];
-		origMagnitudes = new double[vertices.length];
-		for (int i = 0; i < vertices.length; ++i) {
-			// vertex relative to center
-			Vector relV = vertices[i].subtract(center);
-			origAngles[i] = relV.angle();
-			origMagnitudes[i] = relV.magnitude();
+		bounds[0] = xMin;
+		bounds[1] = yMin;
+		bounds[2] = xMax;
+		bounds[3] = yMax;
+	}
+
+	@Override
+	public void project(double axisX, double axisY, double[] range) {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < xs.length; ++i) {
+			double d = xs[i] * axisX + ys[i] * axisY;
+			min = Math.min(min, d);
+			max = Math.max(max, d);
 		}
+		range[0] = min;
+		range[1] = max;
 	}
 
 	@Override
-	public double momentOfInertia() {
-		return momentOfInertia;
+	int numFaceNormals() {
+		return xs.length;
 	}
 
 	@Override
-	public boolean contains(Vector point) {
-		/*
-		 * To calculate this, I draw a ray beginning at point and going to the
-		 * right. I count the number of edges that intersects this ray; if it is
-		 * odd, point in polygon; if it is even, point not in polygon.
-		 */
-		Vector v1, v2; // the points that make up the current edge
-		v1 = vertices[vertices.length - 1];
-		int intersections = 0;
-		for (int i = 0; i < vertices.length; ++i, v1 = v2) {
-			v2 = vertices[i];
-			/*
-			 * boolean v1LowerPoint = v1.y() <= point.y(); boolean v2LowerPoint
-			 * = v2.y() <= point.y(); //one vertex must be higher and one must
-			 * be lower than point if(v1LowerPoint ^ v2LowerPoint) {
-			 */
-			if (v1.getY() <= point.getY() && v2.getY() >= point.getY()
-					|| v2.getY() <= point.getY() && v1.getY() >= point.getY()) {
-				double dx = v2.getX() - v1.getX();
-				if (dx == 0) {
-					// line is vertical, so it must be to the right
-					if (v1.getX() > point.getX())
-						++intersections;
-				} else {
-					double dy = v2.getY() - v1.getY();
-					// calculate slope and y-intercept of line that overlaps
-					// edge
-					double slope = dy / dx;
-					// y = m*x + b; b = y - m*x
-					double yInt = v1.getY() - slope * v1.getX();
-					// y = m*x + b; m*x = y - b; x = (y - b)/m
-					double xInt = (point.getY() - yInt) / slope;
-					// x intercept is to the right of the point
-					if (xInt > point.getX())
-						++intersections;
-				}
+	void faceNormal(int i, double[] normal) {
+		int j = i == 0 ? xs.length - 1 : i - 1;
+		double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+		double length = Math.sqrt(dx * dx + dy * dy);
+		normal[0] = dy / length;
+		normal[1] = -dx / length;
+	}
+
+	@Override
+	boolean face(double dirX, double dirY, double[] face) {
+		// the edge whose outward normal points most nearly along the direction
+		int best = 0;
+		double bestDot = Double.NEGATIVE_INFINITY;
+		double bestLength = 0;
+		int j = xs.length - 1;
+		for (int i = 0; i < xs.length; j = i++) {
+			double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+			double length = Math.sqrt(dx * dx + dy * dy);
+			double dot = template.winding * (dy * dirX - dx * dirY) / length;
+			if (dot > bestDot) {
+				bestDot = dot;
+				best = i;
+				bestLength = length;
 			}
 		}
-		return intersections % 2 == 1;
+		j = best == 0 ? xs.length - 1 : best - 1;
+		face[0] = xs[j];
+		face[1] = ys[j];
+		face[2] = xs[best];
+		face[3] = ys[best];
+		face[4] = template.winding * (ys[best] - ys[j]) / bestLength;
+		face[5] = -template.winding * (xs[best] - xs[j]) / bestLength;
+		return true;
+	}
+
+	@Override
+	public boolean contains(Vector point) {
+		return contains(point.getX(), point.getY());
 	}
 
 	/**
-	 * Add vectors going from the point to an edge or vertex to a
-	 * TranslationMinimizer.
+	 * Tests if the polygon contains a point.
 	 * 
-	 * @param point
-	 *            what to find translations from
-	 * @param mini
-	 *            what to add translations to
+	 * @param px
+	 *            the point's x coordinate
+	 * @param py
+	 *            the point's y coordinate
+	 * @return whether or not the point is in the polygon
 	 */
-	private void addTranslations(Vector point, TranslationMinimizer mini) {
-		// add translations from point to vertices
-		for (Vector selfPoint : vertices) {
-			mini.add(new CollisionResult(selfPoint, point.subtract(selfPoint)));
+	boolean contains(double px, double py) {
+		if (boundsStale) {
+			refreshBounds();
+		}
+		if (px < xMin || px > xMax || py < yMin || py > yMax) {
+			return false;
 		}
-		// add translations from point to edges
-		Vector v1, v2;
-		v1 = vertices[vertices.length - 1];
-		for (int i = 0; i < vertices.length; ++i, v1 = v2) {
-			v2 = vertices[i];
-			Vector trans = perpendicularTranslation(point, v1, v2, true);
-			if (trans != null)
-				mini.add(new CollisionResult(point, trans));
+		return containsCenter(px, py);
+	}
+
+	/**
+	 * Tests if the polygon contains a point, without checking the bounding
+	 * box first. The point is turned into the template's frame, so the
+	 * template's edge slopes can be used.
+	 */
+	private boolean containsCenter(double px, double py) {
+		double dx = px - centerX, dy = py - centerY;
+		return template.contains(cos * dx + sin * dy, cos * dy - sin * dx);
+	}
+
+	/**
+	 * Work out the bounding box for the current vertices.
+	 */
+	private void refreshBounds() {
+		xMin = yMin = Double.POSITIVE_INFINITY;
+		xMax = yMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < xs.length; ++i) {
+			xMin = Math.min(xMin, xs[i]);
+			yMin = Math.min(yMin, ys[i]);
+			xMax = Math.max(xMax, xs[i]);
+			yMax = Math.max(yMax, ys[i]);
 		}
+		boundsStale = false;
 	}
 
 	/**
-	 * Add translations to separate two polygons to a TranslationMaximizer.
+	 * Find the shortest way to move a point out of the polygon, through one of
+	 * its vertices or edges, and offer it to a buffer.
 	 * 
-	 * @param pointPoly
-	 *            the polygon to remove from edgePoly
-	 * @param edgePoly
-	 *            the polygon to remove pointPoly from
-	 * @param maxi
-	 *            what to add translations to
+	 * @param px
+	 *            the point's x coordinate
+	 * @param py
+	 *            the point's y coordinate
+	 * @param out
+	 *            what to offer the translation to
 	 * @param invert
-	 *            whether or not to invert translations before adding
+	 *            whether or not to invert the translation before offering it
 	 */
-	private static void getTranslation(CollisionPolygon pointPoly,
-			CollisionPolygon edgePoly, TranslationMaximizer maxi, boolean invert) {
-		for (Vector point : pointPoly.vertices) {
-			if (edgePoly.contains(point)) {
-				// find the shortest way to get the point out of edgePoly
-				TranslationMinimizer mini = new TranslationMinimizer();
-				edgePoly.addTranslations(point, mini);
-				CollisionResult best = mini.currentBest();
-				if (best != null) {
-					if (invert)
-						best = best.invert();
-					maxi.add(best);
-				}
+	private void escape(double px, double py, ContactBuffer out,
+			boolean invert) {
+		// the shortest translation so far; one that is not a number is never
+		// taken
+		double best = Double.POSITIVE_INFINITY;
+		double bestCx = 0, bestCy = 0, bestTx = 0, bestTy = 0;
+		boolean any = false;
+		// translations from point to vertices
+		for (int i = 0; i < xs.length; ++i) {
+			double tx = px - xs[i], ty = py - ys[i];
+			double m = tx * tx + ty * ty;
+			if (m <= best) {
+				best = m;
+				bestCx = xs[i];
+				bestCy = ys[i];
+				bestTx = tx;
+				bestTy = ty;
+				any = true;
 			}
 		}
+		// translations from point to edges
+		int j = xs.length - 1;
+		for (int i = 0; i < xs.length; j = i++) {
+			// make things relative to the edge's first vertex
+			double ex = xs[i] - xs[j], ey = ys[i] - ys[j];
+			double length = Math.sqrt(ex * ex + ey * ey);
+			double ux = ex / length, uy = ey / length;
+			double rx = px - xs[j], ry = py - ys[j];
+			// how far the point is along the edge
+			double projected = ux * rx + uy * ry;
+			if (projected < 0 || projected > length) {
+				// falls outside the edge, but on the infinite line
+				continue;
+			}
+			double tx = ux * projected - rx, ty = uy * projected - ry;
+			double m = tx * tx + ty * ty;
+			if (m <= best) {
+				best = m;
+				bestCx = px;
+				bestCy = py;
+				bestTx = tx;
+				bestTy = ty;
+				any = true;
+			}
+		}
+		if (any) {
+			if (invert) {
+				bestTx = -bestTx;
+				bestTy = -bestTy;
+			}
+			out.offerLarger(bestCx, bestCy, bestTx, bestTy);
+		}
 	}
 
 	/**
-	 * Gets a translation that will put a point between two points and that is
-	 * perpendicular to a line between the two points.
+	 * Offer translations to separate two polygons to a buffer.
 	 * 
-	 * @param point
-	 *            the point to translate
-	 * @param v1
-	 *            first vertex
-	 * @param v2
-	 *            second vertex
-	 * @param filter
-	 *            whether or not to reject translations that won't be between
-	 *            the points
-	 * @return
+	 * @param pointPoly
+	 *            the polygon to remove from edgePoly
+	 * @param edgePoly
+	 *            the polygon to remove pointPoly from
+	 * @param out
+	 *            what to offer translations to
+	 * @param invert
+	 *            whether or not to invert translations before offering
 	 */
-	private static Vector perpendicularTranslation(Vector point, Vector v1,
-			Vector v2, boolean filter) {
-		// make things relative to v1
-		Vector relV2 = v2.subtract(v1);
-		Vector relPoint = point.subtract(v1);
-		Vector relV2unit = relV2.unit();
-		// project to get the intersection's positive or negative distance from
-		// v1
-		// v2*
-		// |
-		// i*-*p
-		// |/
-		// v1*
-		// i = intersection, p = point
-		// projected = how far i is along the v1 -> v2 line
-		double projected = relV2unit.dotProduct(relPoint);
-		if (filter && (projected < 0 || projected > relV2.magnitude())) {
-			// falls outside the line segment, but on the infinite line
-			return null;
+	private static void getTranslation(CollisionPolygon pointPoly,
+			CollisionPolygon edgePoly, ContactBuffer out, boolean invert) {
+		for (int i = 0; i < pointPoly.xs.length; ++i) {
+			double px = pointPoly.xs[i], py = pointPoly.ys[i];
+			if (edgePoly.contains(px, py)) {
+				// find the shortest way to get the point out of edgePoly
+				edgePoly.escape(px, py, out, invert);
+			}
 		}
-		// the intersection point relative to v1
-		Vector relIntersection = relV2unit.multiply(projected);
-		// (i - v1) - (p - v1) = i - p
-		return relIntersection.subtract(relPoint);
-
 	}
 
 	@Override
-	public CollisionResult collidePolygon(CollisionPolygon other) {
+	public boolean collidePolygon(CollisionPolygon other, ContactBuffer out) {
 		// try to maximize the movement
-		TranslationMaximizer maxi = new TranslationMaximizer();
-		getTranslation(this, other, maxi, false);
+		out.clear();
+		getTranslation(this, other, out, false);
 		// invert when moving the other out of this
-		getTranslation(other, this, maxi, true);
-		return maxi.currentBest();
+		getTranslation(other, this, out, true);
+		return out.found();
 	}
 
 	@Override
-	public CollisionResult collideCircle(CollisionCircle other) {
-		// maximize the translation
-		TranslationMaximizer maxi = new TranslationMaximizer();
-		// if this contains the circle's center, more movement is required to
-		// get the circle out.
-		boolean containsCenter = contains(other.center());
-		// first, try to move the circle out of a point
-		for (Vector vert : vertices) {
-			Vector centerToVert = vert.subtract(other.center());
-			double dist = centerToVert.magnitude();
-			double mag;
-			if (containsCenter) {
-				mag = other.radius() + dist;
-			} else {
-				mag = other.radius() - dist;
+	public boolean collideCircle(CollisionCircle other, ContactBuffer out) {
+		out.clear();
+		double cx = other.centerX(), cy = other.centerY();
+		double radius = other.radius();
+		// a circle beyond the reach of the furthest vertex cannot touch
+		double offX = cx - centerX, offY = cy - centerY;
+		double reach = template.boundingRadius + radius;
+		if (offX * offX + offY * offY >= reach * reach) {
+			return false;
+		}
+		// One pass over the edges finds the closest point on the outline to
+		// the circle's center and the furthest vertex from it.
+		boolean inside = containsCenter(cx, cy);
+		double closest = Double.POSITIVE_INFINITY;
+		double closestX = 0, closestY = 0;
+		double furthest = -1;
+		int furthestVertex = 0;
+		int j = xs.length - 1;
+		for (int i = 0; i < xs.length; j = i++) {
+			double x1 = xs[j], y1 = ys[j];
+			double ex = xs[i] - x1, ey = ys[i] - y1;
+			double rx = cx - x1, ry = cy - y1;
+			// the closest point of the edge, which may be either end
+			double along = (rx * ex + ry * ey) / (ex * ex + ey * ey);
+			along = along < 0 ? 0 : along > 1 ? 1 : along;
+			double px = x1 + ex * along, py = y1 + ey * along;
+			double distSquared = (px - cx) * (px - cx) + (py - cy) * (py - cy);
+			if (distSquared < closest) {
+				closest = distSquared;
+				closestX = px;
+				closestY = py;
 			}
-			if (mag > 0) {
-				// translation is from circle to vertex because the polygon is
-				// moving
-				Vector trans = centerToVert.withMagnitude(mag);
-				// contact point is the vertex
-				maxi.add(new CollisionResult(vert, trans));
+			double vx = xs[i] - cx, vy = ys[i] - cy;
+			if (vx * vx + vy * vy >= furthest) {
+				furthest = vx * vx + vy * vy;
+				furthestVertex = i;
 			}
 		}
-		// next, try to move the circle out through an edge
-		Vector v1, v2;
-		v1 = vertices[vertices.length - 1];
-		for (int i = 0; i < vertices.length; ++i, v1 = v2) {
-			v2 = vertices[i];
-			// vector from the circle's center to the edge
-			Vector centerToEdge = perpendicularTranslation(other.center(), v1,
-					v2, true);
-			if (centerToEdge != null) {
-				double mag;
-				if (containsCenter) {
-					mag = other.radius() + centerToEdge.magnitude();
-				} else {
-					mag = other.radius() - centerToEdge.magnitude();
-				}
-				if (mag > 0) {
-					// translation is from center to edge because polygon is
-					// moving
-					Vector trans = centerToEdge.withMagnitude(mag);
-					// contact point is the edge point
-					Vector contact = other.center().add(centerToEdge);
-					maxi.add(new CollisionResult(contact, trans));
-				}
+		// Translation is from the circle towards the contact because the
+		// polygon is moving. If this contains the circle's center, the circle
+		// is pushed out past the furthest vertex; otherwise out through the
+		// closest point.
+		double contactX, contactY, dist, mag;
+		if (inside) {
+			contactX = xs[furthestVertex];
+			contactY = ys[furthestVertex];
+			dist = Math.sqrt(furthest);
+			mag = radius + dist;
+		} else {
+			contactX = closestX;
+			contactY = closestY;
+			dist = Math.sqrt(closest);
+			mag = radius - dist;
+			if (mag <= 0) {
+				return false;
 			}
 		}
-		return maxi.currentBest();
+		if (dist == 0) {
+			out.set(contactX, contactY, mag, 0);
+		} else {
+			out.set(contactX, contactY, (contactX - cx) / dist * mag,
+					(contactY - cy) / dist * mag);
+		}
+		return true;
 	}
 
 	/**
 	 * Set the vertices to values based on center and rotation.
 	 */
 	private void setVertices() {
-		for (int i = 0; i < vertices.length; ++i) {
-			vertices[i] = center.add(Vector.fromAngle(origAngles[i] + rotation,
-					origMagnitudes[i]));
+		double c = Math.cos(rotation), s = Math.sin(rotation);
+		cos = c;
+		sin = s;
+		for (int i = 0; i < xs.length; ++i) {
+			double x = template.vertexX(i), y = template.vertexY(i);
+			xs[i] = centerX + c * x - s * y;
+			ys[i] = centerY + s * x + c * y;
 		}
+		boundsStale = true;
+	}
+
+	/**
+	 * Put the polygon's center at a point and give it a rotation.
+	 * 
+	 * @param x
+	 *            the center's new x coordinate
+	 * @param y
+	 *            the center's new y coordinate
+	 * @param rotation
+	 *            the new rotation
+	 */
+	void place(double x, double y, double rotation) {
+		centerX = x;
+		centerY = y;
+		this.rotation = rotation;
+		setVertices();
 	}
 
 	@Override
 	public void rotate(double angle) {
-		rotation += angle;
-		setVertices();
+		if (angle != 0) {
+			rotation += angle;
+			setVertices();
+		}
 	}
 
 	@Override
 	public void move(Vector movement) {
+		move(movement.getX(), movement.getY());
+	}
+
+	@Override
+	public void move(double dx, double dy) {
 		// add movement to each vertex and the center
-		for (int i = 0; i < vertices.length; ++i) {
-			vertices[i] = vertices[i].add(movement);
+		for (int i = 0; i < xs.length; ++i) {
+			xs[i] += dx;
+			ys[i] += dy;
 		}
-		center = center.add(movement);
+		centerX += dx;
+		centerY += dy;
+		// moving keeps the bounding box's size
+		xMin += dx;
+		yMin += dy;
+		xMax += dx;
+		yMax += dy;
 	}
 
 	@Override
 	public void moveRotating(double angle, Vector movement) {
-		center = center.add(movement);
+		moveRotating(angle, movement.getX(), movement.getY());
+	}
+
+	@Override
+	public void moveRotating(double angle, double dx, double dy) {
+		if (angle == 0) {
+			// a body that isn't turning only shifts its bounding box
+			move(dx, dy);
+			return;
+		}
+		centerX += dx;
+		centerY += dy;
 		rotation += angle;
 		setVertices();
 	}
@@ -396,10 +549,14 @@ public final class CollisionPolygon extends CollisionShape {
 	@Override
 	public CollisionShape clone() {
 		CollisionPolygon clone = new CollisionPolygon();
-		clone.vertices = vertices.clone();
-		clone.area = area;
-		clone.center = center;
-		clone.momentOfInertia = momentOfInertia;
+		clone.xs = xs.clone();
+		clone.ys = ys.clone();
+		clone.template = template;
+		clone.centerX = centerX;
+		clone.centerY = centerY;
+		clone.rotation = rotation;
+		clone.cos = cos;
+		clone.sin = sin;
 		return clone;
 	}
 
@@ -407,9 +564,9 @@ public final class CollisionPolygon extends CollisionShape {
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("[");
-		for (Vector v : vertices) {
+		for (int i = 0; i < xs.length; ++i) {
 			sb.append(' ');
-			sb.append(v);
+			sb.append(getVertex(i));
 		}
 		sb.append(" ]");
 		return sb.toString();
@@ -418,20 +575,20 @@ public final class CollisionPolygon extends CollisionShape {
 	@Override
 	public void fill(Graphics g) {
 		// get xs and ys
-		int[] xs = new int[vertices.length];
-		int[] ys = new int[vertices.length];
-		for (int i = 0; i < vertices.length; ++i) {
-			xs[i] = (int) vertices[i].getX();
-			ys[i] = (int) vertices[i].getY();
+		int[] pxs = new int[xs.length];
+		int[] pys = new int[xs.length];
+		for (int i = 0; i < xs.length; ++i) {
+			pxs[i] = (int) xs[i];
+			pys[i] = (int) ys[i];
 		}
-		g.fillPolygon(xs, ys, vertices.length);
+		g.fillPolygon(pxs, pys, xs.length);
 	}
 
 	@Override
 	public Shape toShape() {
 		Polygon result = new Polygon();
-		for (Vector v : vertices) {
-			result.addPoint((int) v.getX(), (int) v.getY());
+		for (int i = 0; i < xs.length; ++i) {
+			result.addPoint((int) xs[i], (int) ys[i]);
 		}
 		return result;
 	}
@@ -0,0 +1,433 @@
+package simulation.engine;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+
+/**
+ * A chain of line segments, meant for terrain that does not move. Each segment
+ * is one-sided: the open side is the one its normal points to, where the
+ * normal is the direction from one point to the next turned a quarter
+ * clockwise (see <code>Vector.quarterClockwise</code>). For a chain drawn from
+ * left to right, the open side is above it. The segments are kept in a
+ * bounding volume hierarchy, so a shape is only tested against the segments
+ * near it, and a chain with thousands of segments costs about as much as one
+ * with a few.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class CollisionSegmentChain extends CollisionShape {
+	// how many segments a leaf of the hierarchy holds at most
+	private static final int LEAF_SIZE = 4;
+	// how far from the chain a point may be and still be contained
+	private static final double CONTAINS_DISTANCE = 2;
+
+	// the points of the chain; segment i goes from point i to point i + 1
+	private double[] xs, ys;
+	private double rotation;
+
+	// The hierarchy. Node n has the bounding box nodeBounds[4n] to
+	// nodeBounds[4n + 3]. A leaf has nodeCount[n] > 0 and holds the segments
+	// segmentOrder[nodeStart[n]] up to nodeStart[n] + nodeCount[n]; an inner
+	// node has nodeCount[n] == 0 and children nodeStart[n] and
+	// nodeStart[n] + 1.
+	private double[] nodeBounds;
+	private int[] nodeStart, nodeCount;
+	private int[] segmentOrder;
+	private int nodes;
+	// scratch space for walking the hierarchy and collecting segments
+	private int[] stack;
+	private int[] found;
+	private final double[] box = new double[4];
+
+	/**
+	 * Create a chain through the given points.
+	 *
+	 * @param points
+	 *            the points, in order; there must be at least two
+	 */
+	public CollisionSegmentChain(Vector[] points) {
+		if (points.length < 2) {
+			throw new IllegalArgumentException(
+					"CollisionSegmentChain must have at least 2 points.");
+		}
+		xs = new double[points.length];
+		ys = new double[points.length];
+		for (int i = 0; i < points.length; ++i) {
+			xs[i] = points[i].getX();
+			ys[i] = points[i].getY();
+		}
+		buildHierarchy();
+	}
+
+	private CollisionSegmentChain() {
+
+	}
+
+	/**
+	 * Get the number of points in the chain.
+	 *
+	 * @return how many points there are
+	 */
+	public int numPoints() {
+		return xs.length;
+	}
+
+	/**
+	 * Get the point at a certain index.
+	 *
+	 * @param i
+	 *            the point's index
+	 * @return the point
+	 */
+	public Vector getPoint(int i) {
+		return new Vector(xs[i], ys[i]);
+	}
+
+	/**
+	 * Build the bounding volume hierarchy by splitting the segments in half
+	 * along the longer side of their bounding box, over and over.
+	 */
+	private void buildHierarchy() {
+		int segments = xs.length - 1;
+		segmentOrder = new int[segments];
+		for (int i = 0; i < segments; ++i) {
+			segmentOrder[i] = i;
+		}
+		// a binary tree with leaves of at least one segment has fewer than
+		// twice as many nodes as segments
+		nodeBounds = new double[8 * segments];
+		nodeStart = new int[2 * segments];
+		nodeCount = new int[2 * segments];
+		nodes = 1;
+		int depth = build(0, 0, segments, 0);
+		stack = new int[depth + 2];
+		found = new int[segments];
+	}
+
+	/**
+	 * Build the node at the given index out of some segments.
+	 *
+	 * @return the depth of the deepest node below this one
+	 */
+	private int build(int node, int start, int end, int depth) {
+		double xMin = Double.POSITIVE_INFINITY, yMin = Double.POSITIVE_INFINITY;
+		double xMax = Double.NEGATIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+		for (int i = start; i < end; ++i) {
+			int s = segmentOrder[i];
+			xMin = Math.min(xMin, Math.min(xs[s], xs[s + 1]));
+			yMin = Math.min(yMin, Math.min(ys[s], ys[s + 1]));
+			xMax = Math.max(xMax, Math.max(xs[s], xs[s + 1]));
+			yMax = Math.max(yMax, Math.max(ys[s], ys[s + 1]));
+		}
+		nodeBounds[4 * node] = xMin;
+		nodeBounds[4 * node + 1] = yMin;
+		nodeBounds[4 * node + 2] = xMax;
+		nodeBounds[4 * node + 3] = yMax;
+		if (end - start <= LEAF_SIZE) {
+			nodeStart[node] = start;
+			nodeCount[node] = end - start;
+			return depth;
+		}
+		// sort the segments by their midpoints along the longer side, then
+		// give each child half of them
+		boolean alongX = xMax - xMin >= yMax - yMin;
+		for (int i = start + 1; i < end; ++i) {
+			int s = segmentOrder[i];
+			double mid = midpoint(s, alongX);
+			int j = i;
+			while (j > start && midpoint(segmentOrder[j - 1], alongX) > mid) {
+				segmentOrder[j] = segmentOrder[j - 1];
+				--j;
+			}
+			segmentOrder[j] = s;
+		}
+		int split = (start + end) / 2;
+		int left = nodes;
+		nodes += 2;
+		nodeStart[node] = left;
+		nodeCount[node] = 0;
+		int leftDepth = build(left, start, split, depth + 1);
+		int rightDepth = build(left + 1, split, end, depth + 1);
+		return Math.max(leftDepth, rightDepth);
+	}
+
+	private double midpoint(int segment, boolean alongX) {
+		if (alongX) {
+			return xs[segment] + xs[segment + 1];
+		} else {
+			return ys[segment] + ys[segment + 1];
+		}
+	}
+
+	/**
+	 * Find the segments whose bounding boxes overlap a box. They are written
+	 * to <code>found</code>.
+	 *
+	 * @return how many segments were found
+	 */
+	private int query(double xMin, double yMin, double xMax, double yMax) {
+		int count = 0;
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (nodeBounds[4 * node] > xMax || nodeBounds[4 * node + 2] < xMin
+					|| nodeBounds[4 * node + 1] > yMax
+					|| nodeBounds[4 * node + 3] < yMin) {
+				continue;
+			}
+			if (nodeCount[node] > 0) {
+				for (int i = nodeStart[node]; i < nodeStart[node]
+						+ nodeCount[node]; ++i) {
+					found[count++] = segmentOrder[i];
+				}
+			} else {
+				stack[top++] = nodeStart[node];
+				stack[top++] = nodeStart[node] + 1;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public boolean contains(Vector point) {
+		double px = point.getX(), py = point.getY();
+		int count = query(px - CONTAINS_DISTANCE, py - CONTAINS_DISTANCE, px
+				+ CONTAINS_DISTANCE, py + CONTAINS_DISTANCE);
+		for (int k = 0; k < count; ++k) {
+			int s = found[k];
+			double dx = xs[s + 1] - xs[s], dy = ys[s + 1] - ys[s];
+			double lengthSquared = dx * dx + dy * dy;
+			double t = 0;
+			if (lengthSquared > 0) {
+				t = ((px - xs[s]) * dx + (py - ys[s]) * dy) / lengthSquared;
+				t = Math.max(0, Math.min(1, t));
+			}
+			double ox = px - (xs[s] + t * dx), oy = py - (ys[s] + t * dy);
+			if (ox * ox + oy * oy <= CONTAINS_DISTANCE * CONTAINS_DISTANCE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean collideCircle(CollisionCircle other, ContactBuffer out) {
+		out.clear();
+		double cx = other.centerX(), cy = other.centerY();
+		double r = other.radius();
+		int count = query(cx - r, cy - r, cx + r, cy + r);
+		for (int k = 0; k < count; ++k) {
+			int s = found[k];
+			double ax = xs[s], ay = ys[s];
+			double dx = xs[s + 1] - ax, dy = ys[s + 1] - ay;
+			double lengthSquared = dx * dx + dy * dy;
+			if (lengthSquared == 0) {
+				continue;
+			}
+			double t = ((cx - ax) * dx + (cy - ay) * dy) / lengthSquared;
+			if (t > 0 && t < 1) {
+				// closest to the inside of the segment; push along the normal
+				double length = Math.sqrt(lengthSquared);
+				double nx = dy / length, ny = -dx / length;
+				double dist = (cx - ax) * nx + (cy - ay) * ny;
+				double depth = r - dist;
+				// a circle entirely behind the segment has gone through it
+				if (depth > 0 && dist > -r) {
+					double toContact = dist + depth / 2;
+					out.offerLarger(cx - nx * toContact, cy - ny * toContact,
+							-nx * depth, -ny * depth);
+				}
+			} else {
+				// closest to an end; push away from it
+				double px = t <= 0 ? ax : ax + dx, py = t <= 0 ? ay : ay + dy;
+				double ox = cx - px, oy = cy - py;
+				double distSquared = ox * ox + oy * oy;
+				if (distSquared < r * r && distSquared > 0) {
+					double dist = Math.sqrt(distSquared);
+					double depth = r - dist;
+					out.offerLarger(px, py, -ox / dist * depth, -oy / dist
+							* depth);
+				}
+			}
+		}
+		return out.found();
+	}
+
+	@Override
+	public boolean collidePolygon(CollisionPolygon other, ContactBuffer out) {
+		out.clear();
+		other.getBounds(box);
+		// no vertex can be deeper behind a segment than the polygon is big
+		double size = Math.max(box[2] - box[0], box[3] - box[1]);
+		int count = query(box[0], box[1], box[2], box[3]);
+		for (int k = 0; k < count; ++k) {
+			int s = found[k];
+			double ax = xs[s], ay = ys[s];
+			double dx = xs[s + 1] - ax, dy = ys[s + 1] - ay;
+			double lengthSquared = dx * dx + dy * dy;
+			if (lengthSquared == 0) {
+				continue;
+			}
+			double length = Math.sqrt(lengthSquared);
+			double nx = dy / length, ny = -dx / length;
+			// the polygon's vertices that are behind the segment
+			for (int i = 0; i < other.numVertices(); ++i) {
+				double vx = other.vertexX(i), vy = other.vertexY(i);
+				double t = ((vx - ax) * dx + (vy - ay) * dy) / lengthSquared;
+				double dist = (vx - ax) * nx + (vy - ay) * ny;
+				if (t >= 0 && t <= 1 && dist < 0 && dist > -size) {
+					out.offerLarger(vx, vy, nx * dist, ny * dist);
+				}
+			}
+			// the segment's ends that are inside the polygon
+			for (int end = s; end <= s + 1; ++end) {
+				double ex = xs[end], ey = ys[end];
+				if (other.contains(ex, ey)) {
+					// how far the polygon must move along the normal to
+					// leave the end behind it
+					double depth = 0;
+					for (int i = 0; i < other.numVertices(); ++i) {
+						depth = Math.max(depth, (ex - other.vertexX(i)) * nx
+								+ (ey - other.vertexY(i)) * ny);
+					}
+					out.offerLarger(ex, ey, -nx * depth, -ny * depth);
+				}
+			}
+		}
+		return out.found();
+	}
+
+	@Override
+	public void getBounds(double[] bounds) {
+		System.arraycopy(nodeBounds, 0, bounds, 0, 4);
+	}
+
+	/**
+	 * Get the area of the chain's bounding box. A chain has no area of its
+	 * own, so this is only used to give it a mass and moment of inertia.
+	 *
+	 * @return the area of the bounding box, or 1 if that is 0
+	 */
+	@Override
+	public double area() {
+		double area = (nodeBounds[2] - nodeBounds[0])
+				* (nodeBounds[3] - nodeBounds[1]);
+		return area > 0 ? area : 1;
+	}
+
+	@Override
+	public Vector center() {
+		return new Vector(centerX(), centerY());
+	}
+
+	@Override
+	public double centerX() {
+		return (nodeBounds[0] + nodeBounds[2]) / 2;
+	}
+
+	@Override
+	public double centerY() {
+		return (nodeBounds[1] + nodeBounds[3]) / 2;
+	}
+
+	/**
+	 * Get the moment of inertia of the chain's bounding box.
+	 *
+	 * @return the moment of inertia of the bounding box
+	 */
+	@Override
+	public double momentOfInertia() {
+		double width = nodeBounds[2] - nodeBounds[0];
+		double height = nodeBounds[3] - nodeBounds[1];
+		return area() * (width * width + height * height) / 12;
+	}
+
+	@Override
+	public double rotation() {
+		return rotation;
+	}
+
+	@Override
+	public void rotate(double angle) {
+		Vector center = center();
+		double cs = Math.cos(angle), sn = Math.sin(angle);
+		for (int i = 0; i < xs.length; ++i) {
+			double rx = xs[i] - center.getX(), ry = ys[i] - center.getY();
+			xs[i] = center.getX() + rx * cs - ry * sn;
+			ys[i] = center.getY() + rx * sn + ry * cs;
+		}
+		rotation += angle;
+		buildHierarchy();
+	}
+
+	@Override
+	public void move(Vector movement) {
+		double mx = movement.getX(), my = movement.getY();
+		for (int i = 0; i < xs.length; ++i) {
+			xs[i] += mx;
+			ys[i] += my;
+		}
+		// the hierarchy keeps its shape; only its boxes move
+		for (int n = 0; n < nodes; ++n) {
+			nodeBounds[4 * n] += mx;
+			nodeBounds[4 * n + 1] += my;
+			nodeBounds[4 * n + 2] += mx;
+			nodeBounds[4 * n + 3] += my;
+		}
+	}
+
+	@Override
+	public CollisionShape clone() {
+		CollisionSegmentChain clone = new CollisionSegmentChain();
+		clone.xs = xs.clone();
+		clone.ys = ys.clone();
+		clone.rotation = rotation;
+		clone.buildHierarchy();
+		return clone;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("[");
+		for (int i = 0; i < xs.length; ++i) {
+			sb.append(' ');
+			sb.append(getPoint(i));
+		}
+		sb.append(" ]");
+		return sb.toString();
+	}
+
+	@Override
+	public void fill(Graphics g) {
+		int[] pxs = new int[xs.length];
+		int[] pys = new int[ys.length];
+		for (int i = 0; i < xs.length; ++i) {
+			pxs[i] = (int) xs[i];
+			pys[i] = (int) ys[i];
+		}
+		g.drawPolyline(pxs, pys, xs.length);
+	}
+
+	/**
+	 * Converts to a java.awt.Shape. Since a chain has no inside, the shape is
+	 * the outline of the chain drawn with a thin line, so that filling it
+	 * draws the chain.
+	 *
+	 * @return this converted to a shape
+	 */
+	@Override
+	public Shape toShape() {
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(xs[0], ys[0]);
+		for (int i = 1; i < xs.length; ++i) {
+			path.lineTo(xs[i], ys[i]);
+		}
+		return new BasicStroke((float) (2 * CONTAINS_DISTANCE))
+				.createStrokedShape(path);
+	}
+}
@@ -4,13 +4,18 @@ import java.awt.Graphics;
 import java.awt.Shape;
 
 /**
- * A shape that can be tested to see if it collides with another shape. There
- * are only circles and polygons.
+ * A shape that can be tested to see if it collides with another shape. Bodies
+ * that move are circles, boxes or polygons; walls and terrain may also be
+ * half-planes or segment chains, which only collide with circles, boxes and
+ * polygons.
  * 
  * @author Jacob Taylor
  * 
  */
 public abstract class CollisionShape {
+    // how far apart the ends of two sides may be and still both be contacts
+    private static final double CONTACT_SLOP = .05;
+
     /**
      * Tests if the shape contains a point.
      * 
@@ -20,14 +25,60 @@ public abstract class CollisionShape {
      */
     public abstract boolean contains(Vector point);
 
+    /**
+     * Get the result of colliding with a circle.
+     * 
+     * @param other
+     *            the circle
+     * @param out
+     *            where to put the result; it is cleared first
+     * @return whether there is a collision
+     */
+    public abstract boolean collideCircle(CollisionCircle other,
+            ContactBuffer out);
+
+    /**
+     * Get the result of colliding with a polygon.
+     * 
+     * @param other
+     *            the polygon
+     * @param out
+     *            where to put the result; it is cleared first
+     * @return whether there is a collision
+     */
+    public abstract boolean collidePolygon(CollisionPolygon other,
+            ContactBuffer out);
+
+    /**
+     * Get the result of colliding with a box. By default the box is treated
+     * as a polygon with four vertices.
+     * 
+     * @param other
+     *            the box
+     * @param out
+     *            where to put the result; it is cleared first
+     * @return whether there is a collision
+     */
+    public boolean collideBox(CollisionBox other, ContactBuffer out) {
+        return collidePolygon(other.asPolygon(), out);
+    }
+
     /**
      * Get the result of colliding with a circle.
      * 
      * @param other
      *            the circle
      * @return the result of the collision
+     * @deprecated This allocates a buffer and a result for every call; use
+     *             <code>collideCircle(other, out)</code> with a buffer that is kept
+     *             instead.
      */
-    public abstract CollisionResult collideCircle(CollisionCircle other);
+    @Deprecated
+    public CollisionResult collideCircle(CollisionCircle other) {
+        ContactBuffer out = new ContactBuffer();
+        collideCircle(other, out);
+        return out.toResult();
+    }
 
     /**
      * Get the result of colliding with a polygon.
@@ -35,8 +86,33 @@ public abstract class CollisionShape {
      * @param other
      *            the polygon
      * @return the result of the collision
+     * @deprecated This allocates a buffer and a result for every call; use
+     *             <code>collidePolygon(other, out)</code> with a buffer that is kept
+     *             instead.
+     */
+    @Deprecated
+    public CollisionResult collidePolygon(CollisionPolygon other) {
+        ContactBuffer out = new ContactBuffer();
+        collidePolygon(other, out);
+        return out.toResult();
+    }
+
+    /**
+     * Get the result of colliding with a box.
+     * 
+     * @param other
+     *            the box
+     * @return the result of the collision
+     * @deprecated This allocates a buffer and a result for every call; use
+     *             <code>collideBox(other, out)</code> with a buffer that is kept
+     *             instead.
      */
-    public abstract CollisionResult collidePolygon(CollisionPolygon other);
+    @Deprecated
+    public CollisionResult collideBox(CollisionBox other) {
+        ContactBuffer out = new ContactBuffer();
+        collideBox(other, out);
+        return out.toResult();
+    }
 
     /**
      * Get the shape's area.
@@ -52,6 +128,25 @@ public abstract class CollisionShape {
      */
     public abstract Vector center();
 
+    /**
+     * Get the x coordinate of the shape's center. Shapes that keep their
+     * center in primitive fields override this so it does not allocate.
+     * 
+     * @return the center's x coordinate
+     */
+    public double centerX() {
+        return center().getX();
+    }
+
+    /**
+     * Get the y coordinate of the shape's center.
+     * 
+     * @return the center's y coordinate
+     */
+    public double centerY() {
+        return center().getY();
+    }
+
     /**
      * Get the shape's moment of inertia.
      * 
@@ -59,6 +154,102 @@ public abstract class CollisionShape {
      */
     public abstract double momentOfInertia();
 
+    /**
+     * Get the shape's axis-aligned bounding box. Two shapes can only collide
+     * if their bounding boxes overlap.
+     * 
+     * @param bounds
+     *            an array of at least four elements, which is filled with the
+     *            box's minimum x, minimum y, maximum x and maximum y
+     */
+    public abstract void getBounds(double[] bounds);
+
+    /**
+     * Get the bounding box of the shape as it is drawn. This is the same as
+     * the bounding box, except for shapes that reach infinitely far but are
+     * drawn as something smaller.
+     * 
+     * @param bounds
+     *            an array of at least four elements, which is filled with the
+     *            box's minimum x, minimum y, maximum x and maximum y
+     */
+    void getOutlineBounds(double[] bounds) {
+        getBounds(bounds);
+    }
+
+    /**
+     * Get the range the shape covers along an axis: the smallest and largest
+     * dot products of the axis with points of the shape. By default this is
+     * the range of the bounding box, which may be wider than the shape's own.
+     * 
+     * @param axisX
+     *            the x coordinate of the unit axis
+     * @param axisY
+     *            the y coordinate of the unit axis
+     * @param range
+     *            an array of at least four elements; the first two are set to
+     *            the smallest and largest values
+     */
+    public void project(double axisX, double axisY, double[] range) {
+        getBounds(range);
+        double xMin = range[0], yMin = range[1];
+        double xMax = range[2], yMax = range[3];
+        double min = 0, max = 0;
+        // a zero component must not multiply an infinite bound
+        if (axisX != 0) {
+            min += axisX * (axisX > 0 ? xMin : xMax);
+            max += axisX * (axisX > 0 ? xMax : xMin);
+        }
+        if (axisY != 0) {
+            min += axisY * (axisY > 0 ? yMin : yMax);
+            max += axisY * (axisY > 0 ? yMax : yMin);
+        }
+        range[0] = min;
+        range[1] = max;
+    }
+
+    /**
+     * Get the number of distinct face normals the shape has. These are the
+     * axes that may separate it from another shape; a circle has none.
+     * 
+     * @return the number of face normals
+     */
+    int numFaceNormals() {
+        return 0;
+    }
+
+    /**
+     * Get one of the shape's face normals.
+     * 
+     * @param i
+     *            the normal's index, between 0 and
+     *            <code>numFaceNormals()</code>
+     * @param normal
+     *            an array of at least two elements which is set to the unit
+     *            normal
+     */
+    void faceNormal(int i, double[] normal) {
+        throw new IndexOutOfBoundsException("The shape has no face normals.");
+    }
+
+    /**
+     * Get the flat side of the shape that faces most nearly in a direction.
+     * This is used to give two shapes that touch along their sides a contact
+     * point at each end; shapes without flat sides, like circles, have none.
+     * 
+     * @param dirX
+     *            the x coordinate of the unit direction
+     * @param dirY
+     *            the y coordinate of the unit direction
+     * @param face
+     *            an array of at least six elements, which is filled with the
+     *            side's two ends (x1, y1, x2, y2) and its outward unit normal
+     * @return whether the shape has such a side
+     */
+    boolean face(double dirX, double dirY, double[] face) {
+        return false;
+    }
+
     /**
      * Get the shape's rotation.
      * 
@@ -104,6 +295,32 @@ public abstract class CollisionShape {
 
     }
 
+    /**
+     * Move the shape a certain amount.
+     * 
+     * @param dx
+     *            how far to move along x
+     * @param dy
+     *            how far to move along y
+     */
+    public void move(double dx, double dy) {
+        move(new Vector(dx, dy));
+    }
+
+    /**
+     * Move and rotate the shape.
+     * 
+     * @param angle
+     *            how much to rotate
+     * @param dx
+     *            how far to move along x
+     * @param dy
+     *            how far to move along y
+     */
+    public void moveRotating(double angle, double dx, double dy) {
+        moveRotating(angle, new Vector(dx, dy));
+    }
+
     /**
      * Move and rotate the shape. This may be faster than calling rotate and
      * move sequentially.
@@ -124,28 +341,200 @@ public abstract class CollisionShape {
      * @param other
      *            the other shape
      * @return the result of the collision
+     * @deprecated This allocates a buffer and a result for every call; use
+     *             <code>collide(other, out)</code> with a buffer that is kept
+     *             instead.
      */
+    @Deprecated
     public CollisionResult collide(CollisionShape other) {
-        CollisionResult res;
+        ContactBuffer out = new ContactBuffer();
+        collide(other, out);
+        return out.toResult();
+    }
+
+    /**
+     * Get the result of colliding the shape with another, without allocating.
+     * 
+     * @param other
+     *            the other shape
+     * @param out
+     *            where to put the result; it is cleared first
+     * @return whether there is a collision
+     */
+    public boolean collide(CollisionShape other, ContactBuffer out) {
+        if (!overlaps(other, out))
+            return false;
+        if (out.translationX() == 0 && out.translationY() == 0) {
+            // make the angle go away but be off slightly, to prevent shapes
+            // sliding through each other
+            double angle = Math.atan2(centerY() - other.centerY(), centerX()
+                    - other.centerX()) + .001;
+            out.set(out.contactX(), out.contactY(), .001 * Math.cos(angle),
+                    .001 * Math.sin(angle));
+        }
+        clipContacts(other, out);
+        return true;
+    }
+
+    /**
+     * Tells whether the shape overlaps another. This runs the same test as
+     * <code>collide</code> but stops there, without working out the contact
+     * points, so it is all that sensors need.
+     * 
+     * @param other
+     *            the other shape
+     * @param out
+     *            scratch space for the test; it is cleared first
+     * @return whether the shapes overlap
+     */
+    boolean overlaps(CollisionShape other, ContactBuffer out) {
         if (other instanceof CollisionCircle) {
-            res = collideCircle((CollisionCircle) other);
+            collideCircle((CollisionCircle) other, out);
+        } else if (other instanceof CollisionBox) {
+            collideBox((CollisionBox) other, out);
         } else if (other instanceof CollisionPolygon) {
-            res = collidePolygon((CollisionPolygon) other);
+            collidePolygon((CollisionPolygon) other, out);
+        } else if (other instanceof CollisionHalfPlane
+                || other instanceof CollisionSegmentChain) {
+            // collide the other with this, then invert if there is a collision
+            if (other.collideMoving(this, out))
+                out.invert();
         } else {
             throw new IllegalArgumentException(
-                    "Cannot collide with CollisionShape other than CollisionCircle or CollisionPolygon.");
+                    "Cannot collide with CollisionShape other than CollisionCircle, CollisionBox, CollisionPolygon, CollisionHalfPlane or CollisionSegmentChain.");
         }
-        if (res == null)
-            return null;
-        Vector trans = res.translation();
-        if (trans.getX() == 0 && trans.getY() == 0) {
-            // make the angle go away but be off slightly, to prevent shapes
-            // sliding through each other
-            double angle = center().subtract(other.center()).angle() + .001;
-            return new CollisionResult(res.contactPoint(), Vector.fromAngle(
-                    angle, .001));
+        return out.found();
+    }
+
+    /**
+     * Turn a collision between two shapes with flat sides into a two-point
+     * contact when the sides lie against each other. The side that faces
+     * more squarely across the collision is the reference; the other side is
+     * cut off where the reference side ends, and the ends that reach the
+     * reference side become the contact points, along with how much the
+     * shapes must turn to lie flat. If only one end does, the single contact
+     * is kept.
+     * 
+     * @param other
+     *            the other shape
+     * @param out
+     *            the collision, which is changed if there are two contacts
+     */
+    private void clipContacts(CollisionShape other, ContactBuffer out) {
+        double[] face1 = out.face1, face2 = out.face2;
+        double tx = out.translationX(), ty = out.translationY();
+        double depth = Math.sqrt(tx * tx + ty * ty);
+        // the normal points from the other shape to this one
+        double nx = tx / depth, ny = ty / depth;
+        if (!face(-nx, -ny, face1) || !other.face(nx, ny, face2)) {
+            return;
+        }
+        boolean thisPlane = this instanceof CollisionHalfPlane;
+        boolean otherPlane = other instanceof CollisionHalfPlane;
+        // the reference side: a point on it, its outward normal, and how far
+        // it reaches from the point along the tangent (-normalY, normalX)
+        double rx, ry, rnx, rny, low, high;
+        double[] incident;
+        if (thisPlane || otherPlane) {
+            // a half-plane is always the reference, and its side has no ends;
+            // the contact found is the deepest point of the other shape, so
+            // the boundary is the depth away from it
+            double[] plane = thisPlane ? face1 : face2;
+            incident = thisPlane ? face2 : face1;
+            rnx = plane[4];
+            rny = plane[5];
+            rx = out.contactX() + rnx * depth;
+            ry = out.contactY() + rny * depth;
+            low = Double.NEGATIVE_INFINITY;
+            high = Double.POSITIVE_INFINITY;
+        } else {
+            double[] reference;
+            // prefer the other's side unless this one's is clearly squarer,
+            // so the choice does not flip back and forth between steps
+            if (face2[4] * nx + face2[5] * ny >= .98 * -(face1[4] * nx + face1[5]
+                    * ny) + .001) {
+                reference = face2;
+                incident = face1;
+            } else {
+                reference = face1;
+                incident = face2;
+            }
+            rx = reference[0];
+            ry = reference[1];
+            rnx = reference[4];
+            rny = reference[5];
+            double end = (reference[2] - rx) * -rny + (reference[3] - ry) * rnx;
+            low = Math.min(0, end);
+            high = Math.max(0, end);
+        }
+        // the incident side's ends along the tangent, in order
+        double x1 = incident[0], y1 = incident[1];
+        double x2 = incident[2], y2 = incident[3];
+        double t1 = (x1 - rx) * -rny + (y1 - ry) * rnx;
+        double t2 = (x2 - rx) * -rny + (y2 - ry) * rnx;
+        if (t1 > t2) {
+            double temp = x1;
+            x1 = x2;
+            x2 = temp;
+            temp = y1;
+            y1 = y2;
+            y2 = temp;
+            temp = t1;
+            t1 = t2;
+            t2 = temp;
+        }
+        if (t2 <= low || t1 >= high) {
+            return;
+        }
+        // cut the incident side off at the reference side's ends
+        if (t1 < low) {
+            double f = (low - t1) / (t2 - t1);
+            x1 += (x2 - x1) * f;
+            y1 += (y2 - y1) * f;
+        }
+        if (t2 > high) {
+            double f = (t2 - high) / (t2 - t1);
+            x2 -= (x2 - x1) * f;
+            y2 -= (y2 - y1) * f;
+        }
+        // how far each end is outside the reference side
+        double s1 = (x1 - rx) * rnx + (y1 - ry) * rny;
+        double s2 = (x2 - rx) * rnx + (y2 - ry) * rny;
+        if (s1 > CONTACT_SLOP || s2 > CONTACT_SLOP) {
+            return;
+        }
+        // turning the incident side by this much about one end brings the
+        // other end as deep as the first
+        double span = (x2 - x1) * -rny + (y2 - y1) * rnx;
+        double turn = span > 0 ? (s2 - s1) / span : 0;
+        if (incident == face2) {
+            turn = -turn;
+        }
+        // put the points halfway between the sides
+        out.setContacts(x1 - rnx * s1 / 2, y1 - rny * s1 / 2, x2 - rnx * s2
+                / 2, y2 - rny * s2 / 2, turn);
+    }
+
+    /**
+     * Get the result of colliding with a circle, box or polygon. Two shapes
+     * that are none of these, like two half-planes, never collide.
+     * 
+     * @param other
+     *            the other shape
+     * @param out
+     *            where to put the result; it is cleared first
+     * @return whether there is a collision
+     */
+    private boolean collideMoving(CollisionShape other, ContactBuffer out) {
+        if (other instanceof CollisionCircle) {
+            return collideCircle((CollisionCircle) other, out);
+        } else if (other instanceof CollisionBox) {
+            return collideBox((CollisionBox) other, out);
+        } else if (other instanceof CollisionPolygon) {
+            return collidePolygon((CollisionPolygon) other, out);
         }
-        return res;
+        out.clear();
+        return false;
     }
 
     /**
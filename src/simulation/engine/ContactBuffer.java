@@ -0,0 +1,223 @@
+package simulation.engine;
+
+/**
+ * A reusable place to put the result of a collision test. It holds the same
+ * contact point and translation as a <code>CollisionResult</code>, but in
+ * primitive fields, so a caller can keep one buffer and test any number of
+ * pairs with it without allocating. While a test runs, the buffer also keeps
+ * the best candidate so far. Two shapes with flat sides that touch along a
+ * side get a second contact point, so the side can be held up at both ends.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class ContactBuffer {
+	// where the collision happened
+	private double contactX, contactY;
+	// the other end of the contact, if there are two points
+	private double secondContactX, secondContactY;
+	private int contactCount;
+	// how much the first shape must turn to lie flat against the other
+	private double turn;
+	// how the first shape must be moved to remove it
+	private double translationX, translationY;
+	// the squared length of the translation, for comparing candidates
+	private double measure;
+	private boolean found;
+
+	// the sides of the two shapes, for building two-point contacts
+	final double[] face1 = new double[6];
+	final double[] face2 = new double[6];
+
+	/**
+	 * Create an empty buffer.
+	 */
+	public ContactBuffer() {
+		clear();
+	}
+
+	/**
+	 * Forget the current result.
+	 */
+	public void clear() {
+		found = false;
+		contactCount = 0;
+		measure = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Tells whether the buffer holds a collision.
+	 *
+	 * @return whether there is a collision
+	 */
+	public boolean found() {
+		return found;
+	}
+
+	/**
+	 * Get the x coordinate of where the collision happened.
+	 *
+	 * @return the contact point's x coordinate
+	 */
+	public double contactX() {
+		return contactX;
+	}
+
+	/**
+	 * Get the y coordinate of where the collision happened.
+	 *
+	 * @return the contact point's y coordinate
+	 */
+	public double contactY() {
+		return contactY;
+	}
+
+	/**
+	 * Get the number of contact points, which is 0 if there is no collision
+	 * and otherwise 1 or 2.
+	 *
+	 * @return the number of contact points
+	 */
+	public int contactCount() {
+		return contactCount;
+	}
+
+	/**
+	 * Get the x coordinate of the second contact point.
+	 *
+	 * @return the second contact point's x coordinate
+	 */
+	public double secondContactX() {
+		return secondContactX;
+	}
+
+	/**
+	 * Get the y coordinate of the second contact point.
+	 *
+	 * @return the second contact point's y coordinate
+	 */
+	public double secondContactY() {
+		return secondContactY;
+	}
+
+	/**
+	 * Get the angle the first shape must turn for its side to lie flat
+	 * against the other's. This is 0 unless there are two contact points.
+	 *
+	 * @return the angle
+	 */
+	public double turn() {
+		return turn;
+	}
+
+	/**
+	 * Get the x coordinate of the vector that moves the first shape out of
+	 * the collision.
+	 *
+	 * @return the translation's x coordinate
+	 */
+	public double translationX() {
+		return translationX;
+	}
+
+	/**
+	 * Get the y coordinate of the vector that moves the first shape out of
+	 * the collision.
+	 *
+	 * @return the translation's y coordinate
+	 */
+	public double translationY() {
+		return translationY;
+	}
+
+	/**
+	 * Set the result, replacing any candidate.
+	 *
+	 * @param cx
+	 *            the contact point's x coordinate
+	 * @param cy
+	 *            the contact point's y coordinate
+	 * @param tx
+	 *            the translation's x coordinate
+	 * @param ty
+	 *            the translation's y coordinate
+	 */
+	void set(double cx, double cy, double tx, double ty) {
+		contactX = cx;
+		contactY = cy;
+		translationX = tx;
+		translationY = ty;
+		measure = tx * tx + ty * ty;
+		found = true;
+		contactCount = 1;
+		turn = 0;
+	}
+
+	/**
+	 * Replace the contact point with two points that share the translation.
+	 *
+	 * @param x1
+	 *            the first point's x coordinate
+	 * @param y1
+	 *            the first point's y coordinate
+	 * @param x2
+	 *            the second point's x coordinate
+	 * @param y2
+	 *            the second point's y coordinate
+	 * @param turn
+	 *            the angle the first shape must turn to lie flat against the
+	 *            other
+	 */
+	void setContacts(double x1, double y1, double x2, double y2, double turn) {
+		contactX = x1;
+		contactY = y1;
+		secondContactX = x2;
+		secondContactY = y2;
+		contactCount = 2;
+		this.turn = turn;
+	}
+
+	/**
+	 * Offer a candidate, which becomes the result if its translation is at
+	 * least as long as the current one's. A translation that is not a number
+	 * is never taken.
+	 *
+	 * @param cx
+	 *            the contact point's x coordinate
+	 * @param cy
+	 *            the contact point's y coordinate
+	 * @param tx
+	 *            the translation's x coordinate
+	 * @param ty
+	 *            the translation's y coordinate
+	 */
+	void offerLarger(double cx, double cy, double tx, double ty) {
+		double m = tx * tx + ty * ty;
+		if (m >= measure) {
+			set(cx, cy, tx, ty);
+		}
+	}
+
+	/**
+	 * Turn the translation around, so the result describes the other shape.
+	 */
+	void invert() {
+		translationX = -translationX;
+		translationY = -translationY;
+	}
+
+	/**
+	 * Copy the result into a new <code>CollisionResult</code>. A
+	 * <code>CollisionResult</code> has only one contact point, so a second
+	 * one is left out.
+	 *
+	 * @return the result, or null if there is no collision
+	 */
+	public CollisionResult toResult() {
+		if (!found) {
+			return null;
+		}
+		return new CollisionResult(new Vector(contactX, contactY), new Vector(
+				translationX, translationY));
+	}
+}
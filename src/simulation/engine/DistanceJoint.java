@@ -0,0 +1,108 @@
+package simulation.engine;
+
+/**
+ * A joint that keeps two points, one on each body, at a fixed distance from
+ * each other, like a rigid rod with a hinge at each end.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class DistanceJoint extends Joint {
+	private final double length;
+
+	// worked out by prepare: the direction from the first anchor to the
+	// second, how hard the bodies are to move along it, and how fast the
+	// error should be corrected
+	private double normalX, normalY;
+	private double effectiveMass;
+	private double bias;
+
+	/**
+	 * Create a joint that keeps two points at a certain distance.
+	 *
+	 * @param length
+	 *            the distance
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param connect1
+	 *            where it connects with the first body
+	 * @param connect2
+	 *            where it connects with the second body
+	 */
+	public DistanceJoint(double length, Body b1, Body b2, Vector connect1,
+			Vector connect2) {
+		super(b1, b2, connect1, connect2);
+		if (length < 0) {
+			throw new IllegalArgumentException(
+					"The length must not be negative.");
+		}
+		this.length = length;
+	}
+
+	/**
+	 * Create a joint that keeps two points at the distance they are now.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param connect1
+	 *            where it connects with the first body
+	 * @param connect2
+	 *            where it connects with the second body
+	 */
+	public DistanceJoint(Body b1, Body b2, Vector connect1, Vector connect2) {
+		this(connect2.subtract(connect1).magnitude(), b1, b2, connect1,
+				connect2);
+	}
+
+	/**
+	 * Get the distance the joint keeps its points at.
+	 *
+	 * @return the distance
+	 */
+	public double length() {
+		return length;
+	}
+
+	@Override
+	void prepare(double amount) {
+		super.prepare(amount);
+		double dx = separationX(), dy = separationY();
+		double dist = Math.sqrt(dx * dx + dy * dy);
+		if (dist == 0) {
+			// any direction will do
+			normalX = 1;
+			normalY = 0;
+		} else {
+			normalX = dx / dist;
+			normalY = dy / dist;
+		}
+		double lever1 = arm1X * normalY - arm1Y * normalX;
+		double lever2 = arm2X * normalY - arm2Y * normalX;
+		double k = inverseMass1 + inverseMass2 + inverseInertia1 * lever1
+				* lever1 + inverseInertia2 * lever2 * lever2;
+		effectiveMass = k > 0 ? 1 / k : 0;
+		bias = CORRECTION / amount * (dist - length);
+	}
+
+	@Override
+	void solve() {
+		double speed = relativeVelocityX() * normalX + relativeVelocityY()
+				* normalY;
+		double impulse = -(speed + bias) * effectiveMass;
+		applyImpulse(impulse * normalX, impulse * normalY);
+	}
+
+	@Override
+	void project(double amount) {
+		super.prepare(amount);
+		double dx = separationX(), dy = separationY();
+		double dist = Math.sqrt(dx * dx + dy * dy);
+		if (dist > 0) {
+			pull(dx / dist, dy / dist, dist - length, amount);
+		}
+	}
+}
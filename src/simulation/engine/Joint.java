@@ -0,0 +1,252 @@
+package simulation.engine;
+
+import java.awt.Graphics;
+
+/**
+ * A rigid connection between two bodies. Unlike a spring, a joint does not
+ * pull its bodies back together after they drift apart; it changes their
+ * velocities so that they don't drift apart in the first place. The
+ * simulation solves every joint a few times each step, right after the
+ * contacts, and each time a joint fixes up its own bodies' velocities with
+ * an impulse. Errors that creep in anyway are corrected a little each step.
+ * When the simulation steps by positions instead, a joint moves its bodies
+ * back together directly.
+ * <p>
+ * A joint is attached to each body at a point that turns with the body. One
+ * of the bodies may be fixed, which pins the other to the world.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public abstract class Joint {
+	// how much of a joint's error is corrected in each step
+	static final double CORRECTION = .2;
+
+	private final Body body1, body2;
+	// where the joint is attached, relative to each body's center and
+	// unrotated
+	private final double anchor1X, anchor1Y, anchor2X, anchor2Y;
+
+	// Worked out by prepare: where the joint is attached, relative to each
+	// body's center, and how easily the bodies move, which is 0 for fixed
+	// bodies.
+	double arm1X, arm1Y, arm2X, arm2Y;
+	double inverseMass1, inverseMass2, inverseInertia1, inverseInertia2;
+
+	/**
+	 * Create a joint between two bodies.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param anchor1
+	 *            where it is attached to the first body
+	 * @param anchor2
+	 *            where it is attached to the second body
+	 */
+	Joint(Body b1, Body b2, Vector anchor1, Vector anchor2) {
+		body1 = b1;
+		body2 = b2;
+		CollisionShape shape1 = b1.getShape(), shape2 = b2.getShape();
+		double c1 = Math.cos(shape1.rotation()), s1 = Math.sin(shape1
+				.rotation());
+		double r1x = anchor1.getX() - shape1.centerX();
+		double r1y = anchor1.getY() - shape1.centerY();
+		anchor1X = c1 * r1x + s1 * r1y;
+		anchor1Y = c1 * r1y - s1 * r1x;
+		double c2 = Math.cos(shape2.rotation()), s2 = Math.sin(shape2
+				.rotation());
+		double r2x = anchor2.getX() - shape2.centerX();
+		double r2y = anchor2.getY() - shape2.centerY();
+		anchor2X = c2 * r2x + s2 * r2y;
+		anchor2Y = c2 * r2y - s2 * r2x;
+	}
+
+	/**
+	 * Get the first body the joint is connected to.
+	 *
+	 * @return the first body
+	 */
+	public Body connectedBody1() {
+		return body1;
+	}
+
+	/**
+	 * Get the second body the joint is connected to.
+	 *
+	 * @return the second body
+	 */
+	public Body connectedBody2() {
+		return body2;
+	}
+
+	/**
+	 * Get the point where the joint is attached to the first body.
+	 *
+	 * @return the point
+	 */
+	public Vector vertex1() {
+		CollisionShape shape = body1.getShape();
+		double c = Math.cos(shape.rotation()), s = Math.sin(shape.rotation());
+		return new Vector(shape.centerX() + c * anchor1X - s * anchor1Y, shape
+				.centerY()
+				+ s * anchor1X + c * anchor1Y);
+	}
+
+	/**
+	 * Get the point where the joint is attached to the second body.
+	 *
+	 * @return the point
+	 */
+	public Vector vertex2() {
+		CollisionShape shape = body2.getShape();
+		double c = Math.cos(shape.rotation()), s = Math.sin(shape.rotation());
+		return new Vector(shape.centerX() + c * anchor2X - s * anchor2Y, shape
+				.centerY()
+				+ s * anchor2X + c * anchor2Y);
+	}
+
+	/**
+	 * Get ready for the iterations of a step, working out everything that
+	 * stays the same while the joint is solved.
+	 *
+	 * @param amount
+	 *            the number of time units the step lasts
+	 */
+	void prepare(double amount) {
+		CollisionShape shape1 = body1.getShape(), shape2 = body2.getShape();
+		double c1 = Math.cos(shape1.rotation()), s1 = Math.sin(shape1
+				.rotation());
+		arm1X = c1 * anchor1X - s1 * anchor1Y;
+		arm1Y = s1 * anchor1X + c1 * anchor1Y;
+		double c2 = Math.cos(shape2.rotation()), s2 = Math.sin(shape2
+				.rotation());
+		arm2X = c2 * anchor2X - s2 * anchor2Y;
+		arm2Y = s2 * anchor2X + c2 * anchor2Y;
+		inverseMass1 = body1.inverseMass();
+		inverseMass2 = body2.inverseMass();
+		inverseInertia1 = body1.inverseMomentOfInertia();
+		inverseInertia2 = body2.inverseMomentOfInertia();
+	}
+
+	/**
+	 * Change the bodies' velocities once to better agree with the joint.
+	 */
+	abstract void solve();
+
+	/**
+	 * Move the bodies once to agree with the joint, for position-based
+	 * stepping.
+	 *
+	 * @param amount
+	 *            the number of time units the step lasts
+	 */
+	abstract void project(double amount);
+
+	/**
+	 * Move the bodies so that the second anchor comes closer to the first
+	 * along a direction.
+	 */
+	void pull(double nx, double ny, double error, double amount) {
+		PositionSolver.correct(body1, body2, arm1X, arm1Y, arm2X, arm2Y, nx,
+				ny, error, 0, amount);
+	}
+
+	/**
+	 * Turn the bodies so that the second turns back compared to the first.
+	 */
+	void turn(double error) {
+		double k = inverseInertia1 + inverseInertia2;
+		if (k == 0) {
+			return;
+		}
+		double lambda = error / k;
+		if (!body1.fixed()) {
+			body1.getShape().moveRotating(inverseInertia1 * lambda, 0, 0);
+		}
+		if (!body2.fixed()) {
+			body2.getShape().moveRotating(-inverseInertia2 * lambda, 0, 0);
+		}
+	}
+
+	/**
+	 * Get how far the second anchor is from the first along the x axis.
+	 */
+	double separationX() {
+		return body2.getShape().centerX() + arm2X - body1.getShape().centerX()
+				- arm1X;
+	}
+
+	/**
+	 * Get how far the second anchor is from the first along the y axis.
+	 */
+	double separationY() {
+		return body2.getShape().centerY() + arm2Y - body1.getShape().centerY()
+				- arm1Y;
+	}
+
+	/**
+	 * Get how fast the second anchor moves away from the first along the x
+	 * axis.
+	 */
+	double relativeVelocityX() {
+		return body2.velocityAtX(body2.getShape().centerY() + arm2Y)
+				- body1.velocityAtX(body1.getShape().centerY() + arm1Y);
+	}
+
+	/**
+	 * Get how fast the second anchor moves away from the first along the y
+	 * axis.
+	 */
+	double relativeVelocityY() {
+		return body2.velocityAtY(body2.getShape().centerX() + arm2X)
+				- body1.velocityAtY(body1.getShape().centerX() + arm1X);
+	}
+
+	/**
+	 * Get how fast the second body turns compared to the first.
+	 */
+	double relativeAngularVelocity() {
+		return body2.angularVelocity() - body1.angularVelocity();
+	}
+
+	/**
+	 * Apply an impulse at the second anchor, and the opposite one at the
+	 * first.
+	 */
+	void applyImpulse(double impX, double impY) {
+		body2.addImpulse(impX, impY, body2.getShape().centerX() + arm2X, body2
+				.getShape().centerY()
+				+ arm2Y);
+		body1.addImpulse(-impX, -impY, body1.getShape().centerX() + arm1X,
+				body1.getShape().centerY() + arm1Y);
+	}
+
+	/**
+	 * Apply an angular impulse to the second body, and the opposite one to
+	 * the first.
+	 */
+	void applyAngularImpulse(double impulse) {
+		if (!body2.fixed()) {
+			body2.setAngularVelocity(body2.angularVelocity() + impulse
+					* inverseInertia2);
+		}
+		if (!body1.fixed()) {
+			body1.setAngularVelocity(body1.angularVelocity() - impulse
+					* inverseInertia1);
+		}
+	}
+
+	/**
+	 * Draw the joint on a graphics object.
+	 *
+	 * @param g
+	 *            graphics object
+	 */
+	public void draw(Graphics g) {
+		Vector v1 = vertex1(), v2 = vertex2();
+		g.drawLine((int) v1.getX(), (int) v1.getY(), (int) v2.getX(), (int) v2
+				.getY());
+	}
+}
@@ -0,0 +1,559 @@
+package simulation.engine;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Arrays;
+
+/**
+ * A large population of circular particles. Unlike bodies, particles do not
+ * rotate and have no friction; they only bounce off each other and off the
+ * optional bounding box. All of their state is kept in packed arrays of
+ * doubles so that stepping a particle never creates any objects, which makes
+ * it possible to simulate a very large number of them.
+ * <p>
+ * Every so often the particles are put in Z-order by their positions, so that
+ * particles near each other in space are near each other in the arrays and
+ * colliding neighbors reads memory mostly in order. The index returned by
+ * <code>add</code> is a handle that stays with its particle through this.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class ParticleSystem {
+	private static final int INITIAL_CAPACITY = 64;
+	// the most cells the grid is allowed to have per particle
+	private static final int MAX_CELLS_PER_PARTICLE = 4;
+	// how many steps go by between putting the particles in Z-order
+	private static final int REORDER_INTERVAL = 16;
+
+	// packed particle state; index i in each array belongs to the particle
+	// in slot i
+	private double[] x, y, vx, vy, radius, inverseMass;
+	private int count;
+	// the slot of the particle with each handle, and the handle of the
+	// particle in each slot
+	private int[] slotOf, handleOf;
+	private int stepsUntilReorder;
+	// scratch space for reordering
+	private double[] spare;
+	private int[] spareHandles;
+	private long[] keys;
+	private double maxRadius;
+
+	// The product of two particles' bounciness, like for bodies.
+	private double bounciness;
+
+	// the box that contains the particles, if any
+	private boolean bounded;
+	private double boundsXMin, boundsYMin, boundsXMax, boundsYMax;
+
+	private Color color = Color.blue;
+
+	// Grid broad phase. Particles are sorted by cell with a counting sort;
+	// the particles in cell c are cellParticles[cellStart[c]] up to (but not
+	// including) cellParticles[cellStart[c + 1]].
+	private int[] cellOf;
+	private int[] cellStart = new int[1];
+	private int[] cellParticles;
+	// copies of the particles' positions and radii, in the same order as
+	// cellParticles, so that neighboring cells can be scanned sequentially
+	private double[] sortedX, sortedY, sortedRadius;
+	// the indices of sorted particles that passed the overlap filter
+	private int[] candidates;
+	private int columns, rows;
+	private double gridX, gridY, cellSize;
+
+	/**
+	 * Creates an empty particle system.
+	 */
+	public ParticleSystem() {
+		allocate(INITIAL_CAPACITY);
+		bounciness = Body.getDefaultBounciness();
+	}
+
+	private void allocate(int capacity) {
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		vx = copy(vx, capacity);
+		vy = copy(vy, capacity);
+		radius = copy(radius, capacity);
+		inverseMass = copy(inverseMass, capacity);
+		slotOf = copy(slotOf, capacity);
+		handleOf = copy(handleOf, capacity);
+		spare = new double[capacity];
+		spareHandles = new int[capacity];
+		keys = new long[capacity];
+		cellOf = new int[capacity];
+		cellParticles = new int[capacity];
+		sortedX = new double[capacity];
+		sortedY = new double[capacity];
+		sortedRadius = new double[capacity];
+		candidates = new int[capacity];
+	}
+
+	private double[] copy(double[] array, int capacity) {
+		double[] result = new double[capacity];
+		if (array != null) {
+			System.arraycopy(array, 0, result, 0, count);
+		}
+		return result;
+	}
+
+	private int[] copy(int[] array, int capacity) {
+		int[] result = new int[capacity];
+		if (array != null) {
+			System.arraycopy(array, 0, result, 0, count);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a particle.
+	 *
+	 * @param px
+	 *            the x coordinate of the particle's center
+	 * @param py
+	 *            the y coordinate of the particle's center
+	 * @param r
+	 *            the particle's radius
+	 * @param mass
+	 *            the particle's mass; must be positive
+	 * @return the index of the new particle, which stays the same when the
+	 *         particles are reordered
+	 */
+	public synchronized int add(double px, double py, double r, double mass) {
+		if (r <= 0 || mass <= 0) {
+			throw new IllegalArgumentException(
+					"Particles must have a positive radius and mass.");
+		}
+		if (count == x.length) {
+			allocate(2 * count);
+		}
+		x[count] = px;
+		y[count] = py;
+		vx[count] = 0;
+		vy[count] = 0;
+		radius[count] = r;
+		inverseMass[count] = 1 / mass;
+		slotOf[count] = count;
+		handleOf[count] = count;
+		if (r > maxRadius) {
+			maxRadius = r;
+		}
+		return count++;
+	}
+
+	/**
+	 * Removes every particle.
+	 */
+	public synchronized void clear() {
+		count = 0;
+		maxRadius = 0;
+	}
+
+	/**
+	 * Get the number of particles.
+	 *
+	 * @return the number of particles
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the x coordinate of a particle's center.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @return the x coordinate
+	 */
+	public double getX(int i) {
+		return x[slotOf[i]];
+	}
+
+	/**
+	 * Get the y coordinate of a particle's center.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @return the y coordinate
+	 */
+	public double getY(int i) {
+		return y[slotOf[i]];
+	}
+
+	/**
+	 * Get a particle's radius.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @return the radius
+	 */
+	public double getRadius(int i) {
+		return radius[slotOf[i]];
+	}
+
+	/**
+	 * Get the x component of a particle's velocity.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @return the x velocity
+	 */
+	public double getVelocityX(int i) {
+		return vx[slotOf[i]];
+	}
+
+	/**
+	 * Get the y component of a particle's velocity.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @return the y velocity
+	 */
+	public double getVelocityY(int i) {
+		return vy[slotOf[i]];
+	}
+
+	/**
+	 * Set a particle's velocity.
+	 *
+	 * @param i
+	 *            the particle's index
+	 * @param velocityX
+	 *            the new x velocity
+	 * @param velocityY
+	 *            the new y velocity
+	 */
+	public void setVelocity(int i, double velocityX, double velocityY) {
+		int slot = slotOf[i];
+		vx[slot] = velocityX;
+		vy[slot] = velocityY;
+	}
+
+	/**
+	 * Get the bounciness shared by all the particles.
+	 *
+	 * @return the bounciness
+	 */
+	public double getBounciness() {
+		return bounciness;
+	}
+
+	/**
+	 * Set the bounciness shared by all the particles. Like for bodies, the
+	 * value should be between 0 and 1 inclusive; if it isn't nothing will
+	 * happen.
+	 *
+	 * @param bounciness
+	 *            the new bounciness
+	 */
+	public void setBounciness(double bounciness) {
+		if (bounciness >= 0 && bounciness <= 1) {
+			this.bounciness = bounciness;
+		}
+	}
+
+	/**
+	 * Confines the particles to a box. Particles bounce off the inside of the
+	 * box's edges.
+	 *
+	 * @param xMin
+	 *            the left edge of the box
+	 * @param yMin
+	 *            the top edge of the box
+	 * @param xMax
+	 *            the right edge of the box
+	 * @param yMax
+	 *            the bottom edge of the box
+	 */
+	public synchronized void setBounds(double xMin, double yMin, double xMax,
+			double yMax) {
+		bounded = true;
+		boundsXMin = xMin;
+		boundsYMin = yMin;
+		boundsXMax = xMax;
+		boundsYMax = yMax;
+	}
+
+	/**
+	 * Lets the particles move anywhere, removing the box set by
+	 * <code>setBounds</code>.
+	 */
+	public synchronized void clearBounds() {
+		bounded = false;
+	}
+
+	/**
+	 * Get the color the particles are drawn in.
+	 *
+	 * @return the color
+	 */
+	public Color getColor() {
+		return color;
+	}
+
+	/**
+	 * Set the color the particles are drawn in.
+	 *
+	 * @param color
+	 *            the new color
+	 */
+	public void setColor(Color color) {
+		this.color = color;
+	}
+
+	/**
+	 * Step the particles as if a certain amount of time has passed. This
+	 * collides them, moves them and applies gravity, in the same order as
+	 * <code>Simulation</code> does for bodies.
+	 *
+	 * @param amount
+	 *            how many time units to pass
+	 * @param gravity
+	 *            the simulation's gravity
+	 */
+	synchronized void step(double amount, double gravity) {
+		if (count == 0) {
+			return;
+		}
+		if (--stepsUntilReorder <= 0) {
+			reorder();
+			stepsUntilReorder = REORDER_INTERVAL;
+		}
+		buildGrid();
+		collideParticles();
+		if (bounded) {
+			collideBounds();
+		}
+		double dv = amount * gravity;
+		for (int i = 0; i < count; ++i) {
+			x[i] += vx[i] * amount;
+			y[i] += vy[i] * amount;
+			vy[i] += dv;
+		}
+	}
+
+	/**
+	 * Put the particles in Z-order by their positions, moving every array
+	 * and updating the handles to match.
+	 */
+	private void reorder() {
+		ZOrder.sort(x, y, count, keys);
+		x = reorder(x);
+		y = reorder(y);
+		vx = reorder(vx);
+		vy = reorder(vy);
+		radius = reorder(radius);
+		inverseMass = reorder(inverseMass);
+		for (int k = 0; k < count; ++k) {
+			int handle = handleOf[(int) keys[k]];
+			spareHandles[k] = handle;
+			slotOf[handle] = k;
+		}
+		int[] swap = handleOf;
+		handleOf = spareHandles;
+		spareHandles = swap;
+	}
+
+	/**
+	 * Copy an array into the spare one in the order given by
+	 * <code>keys</code>, and keep the old one as the next spare.
+	 */
+	private double[] reorder(double[] array) {
+		double[] result = spare;
+		for (int k = 0; k < count; ++k) {
+			result[k] = array[(int) keys[k]];
+		}
+		spare = array;
+		return result;
+	}
+
+	/**
+	 * Sort the particles into a grid whose cells are as wide as the largest
+	 * particle, so that overlapping particles are always in the same or
+	 * neighboring cells.
+	 */
+	private void buildGrid() {
+		double xMin = Double.POSITIVE_INFINITY, yMin = Double.POSITIVE_INFINITY;
+		double xMax = Double.NEGATIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; ++i) {
+			xMin = Math.min(xMin, x[i]);
+			xMax = Math.max(xMax, x[i]);
+			yMin = Math.min(yMin, y[i]);
+			yMax = Math.max(yMax, y[i]);
+		}
+		cellSize = 2 * maxRadius;
+		// a few particles spread over a large area would make a huge, mostly
+		// empty grid, so make the cells bigger until the grid is small enough
+		long maxCells = (long) MAX_CELLS_PER_PARTICLE * count + 1;
+		while ((long) ((xMax - xMin) / cellSize + 1)
+				* (long) ((yMax - yMin) / cellSize + 1) > maxCells) {
+			cellSize *= 2;
+		}
+		gridX = xMin;
+		gridY = yMin;
+		columns = (int) ((xMax - xMin) / cellSize) + 1;
+		rows = (int) ((yMax - yMin) / cellSize) + 1;
+		int cells = columns * rows;
+		if (cellStart.length < cells + 1) {
+			cellStart = new int[cells + 1];
+		} else {
+			Arrays.fill(cellStart, 0, cells + 1, 0);
+		}
+		// count the particles in each cell
+		for (int i = 0; i < count; ++i) {
+			int cell = (int) ((y[i] - gridY) / cellSize) * columns
+					+ (int) ((x[i] - gridX) / cellSize);
+			cellOf[i] = cell;
+			++cellStart[cell + 1];
+		}
+		for (int c = 0; c < cells; ++c) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		// place each particle, using cellOf as the insertion point of its cell
+		for (int i = 0; i < count; ++i) {
+			int cell = cellOf[i];
+			cellOf[i] = cellStart[cell]++;
+			cellParticles[cellOf[i]] = i;
+			sortedX[cellOf[i]] = x[i];
+			sortedY[cellOf[i]] = y[i];
+			sortedRadius[cellOf[i]] = radius[i];
+		}
+		// placing shifted every start to the next cell's start, so shift back
+		for (int c = cells; c > 0; --c) {
+			cellStart[c] = cellStart[c - 1];
+		}
+		cellStart[0] = 0;
+	}
+
+	/**
+	 * Collide every pair of particles that share a cell or are in neighboring
+	 * cells. Only half of the neighbors are visited, so that each pair of cells
+	 * is only looked at once: the cell to the right and the three cells below.
+	 * Because the grid is sorted row by row, the candidates in these cells are
+	 * two contiguous runs of the sorted arrays, which are filtered in blocks by
+	 * <code>CollisionCircle.overlapping</code>.
+	 */
+	private void collideParticles() {
+		for (int row = 0; row < rows; ++row) {
+			for (int column = 0; column < columns; ++column) {
+				int cell = row * columns + column;
+				int start = cellStart[cell], end = cellStart[cell + 1];
+				// the rest of this cell, and the cell to the right
+				int sameRowEnd = column + 1 < columns ? cellStart[cell + 2]
+						: end;
+				// the cells below
+				int belowStart = 0, belowEnd = 0;
+				if (row + 1 < rows) {
+					int below = cell + columns;
+					belowStart = cellStart[column > 0 ? below - 1 : below];
+					belowEnd = cellStart[column + 1 < columns ? below + 2
+							: below + 1];
+				}
+				for (int a = start; a < end; ++a) {
+					int i = cellParticles[a];
+					collideRun(i, a + 1, sameRowEnd);
+					collideRun(i, belowStart, belowEnd);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collide a particle with a run of the particles sorted by cell.
+	 */
+	private void collideRun(int i, int from, int to) {
+		int hits = CollisionCircle.overlapping(x[i], y[i], radius[i], sortedX,
+				sortedY, sortedRadius, from, to, candidates);
+		for (int h = 0; h < hits; ++h) {
+			collidePair(i, cellParticles[candidates[h]]);
+		}
+	}
+
+	/**
+	 * Collide two particles. The square root is only taken once they are
+	 * known to overlap. The overlap is checked again here because the
+	 * sorted copies may be out of date once earlier pairs have been pushed
+	 * apart.
+	 */
+	private void collidePair(int i, int j) {
+		double dx = x[i] - x[j];
+		double dy = y[i] - y[j];
+		double radii = radius[i] + radius[j];
+		double distSquared = dx * dx + dy * dy;
+		if (distSquared >= radii * radii) {
+			return;
+		}
+		double dist = Math.sqrt(distSquared);
+		double nx, ny;
+		if (dist == 0) {
+			// exactly on top of each other, so pick any direction
+			nx = 1;
+			ny = 0;
+		} else {
+			nx = dx / dist;
+			ny = dy / dist;
+		}
+		double totalInverse = inverseMass[i] + inverseMass[j];
+		// how much of the relative velocity is pushing them together
+		double vTowards = (vx[i] - vx[j]) * nx + (vy[i] - vy[j]) * ny;
+		if (vTowards < 0) {
+			double impulse = -(1 + bounciness * bounciness) * vTowards
+					/ totalInverse;
+			vx[i] += impulse * inverseMass[i] * nx;
+			vy[i] += impulse * inverseMass[i] * ny;
+			vx[j] -= impulse * inverseMass[j] * nx;
+			vy[j] -= impulse * inverseMass[j] * ny;
+		}
+		// move them apart, the lighter one more
+		double shift = (radii - dist) / totalInverse;
+		x[i] += shift * inverseMass[i] * nx;
+		y[i] += shift * inverseMass[i] * ny;
+		x[j] -= shift * inverseMass[j] * nx;
+		y[j] -= shift * inverseMass[j] * ny;
+	}
+
+	/**
+	 * Bounce the particles off the edges of the bounding box.
+	 */
+	private void collideBounds() {
+		double bounce = bounciness * bounciness;
+		for (int i = 0; i < count; ++i) {
+			double r = radius[i];
+			if (x[i] - r < boundsXMin) {
+				x[i] = boundsXMin + r;
+				if (vx[i] < 0)
+					vx[i] = -bounce * vx[i];
+			} else if (x[i] + r > boundsXMax) {
+				x[i] = boundsXMax - r;
+				if (vx[i] > 0)
+					vx[i] = -bounce * vx[i];
+			}
+			if (y[i] - r < boundsYMin) {
+				y[i] = boundsYMin + r;
+				if (vy[i] < 0)
+					vy[i] = -bounce * vy[i];
+			} else if (y[i] + r > boundsYMax) {
+				y[i] = boundsYMax - r;
+				if (vy[i] > 0)
+					vy[i] = -bounce * vy[i];
+			}
+		}
+	}
+
+	/**
+	 * Draw the particles on a certain Graphics object.
+	 *
+	 * @param g
+	 *            what to draw on
+	 */
+	public synchronized void fill(Graphics g) {
+		g.setColor(color);
+		for (int i = 0; i < count; ++i) {
+			double r = radius[i];
+			int diam = (int) (2 * r);
+			g.fillOval((int) (x[i] - r), (int) (y[i] - r), diam, diam);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package simulation.engine;
+
+/**
+ * A joint that holds a point on one body to a point on another, letting the
+ * bodies turn about it freely, like a hinge. Pinning a body to a fixed body
+ * hangs it from that point.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public class PinJoint extends Joint {
+	// worked out by prepare: the inverse of how hard the anchors are to move
+	// apart, which is a symmetric 2 by 2 matrix, and how fast the error
+	// should be corrected
+	private double massXX, massXY, massYY;
+	private double biasX, biasY;
+
+	/**
+	 * Create a joint that holds two bodies together at a point.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param point
+	 *            where the bodies are held together
+	 */
+	public PinJoint(Body b1, Body b2, Vector point) {
+		super(b1, b2, point, point);
+	}
+
+	@Override
+	void prepare(double amount) {
+		super.prepare(amount);
+		double m = inverseMass1 + inverseMass2;
+		double kxx = m + inverseInertia1 * arm1Y * arm1Y + inverseInertia2
+				* arm2Y * arm2Y;
+		double kxy = -inverseInertia1 * arm1X * arm1Y - inverseInertia2
+				* arm2X * arm2Y;
+		double kyy = m + inverseInertia1 * arm1X * arm1X + inverseInertia2
+				* arm2X * arm2X;
+		double det = kxx * kyy - kxy * kxy;
+		if (det > 0) {
+			massXX = kyy / det;
+			massXY = -kxy / det;
+			massYY = kxx / det;
+		} else {
+			massXX = massXY = massYY = 0;
+		}
+		biasX = CORRECTION / amount * separationX();
+		biasY = CORRECTION / amount * separationY();
+	}
+
+	@Override
+	void solve() {
+		double vx = relativeVelocityX() + biasX;
+		double vy = relativeVelocityY() + biasY;
+		applyImpulse(-(massXX * vx + massXY * vy), -(massXY * vx + massYY
+				* vy));
+	}
+
+	@Override
+	void project(double amount) {
+		prepare(amount);
+		double dx = separationX(), dy = separationY();
+		double dist = Math.sqrt(dx * dx + dy * dy);
+		if (dist > 0) {
+			pull(dx / dist, dy / dist, dist, amount);
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package simulation.engine;
+
+import java.awt.Polygon;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+
+/**
+ * Removes vertices that barely change the outline of a polygon, using the
+ * Douglas-Peucker algorithm. Polygons drawn by hand often have many vertices
+ * that are nearly in a line, and every vertex makes collisions slower: a
+ * collision between two polygons checks each vertex of one against each edge
+ * of the other. A simplified polygon whose area differs too much from the
+ * original is tried again with a smaller tolerance, and the original is kept
+ * if that fails too.
+ * <p>
+ * The simplifier keeps totals of the vertices it has removed, so the savings
+ * can be reported. It also remembers the last outline it built a polygon
+ * from, so that stamping the same outline again shares its template.
+ * 
+ * @author Jacob Taylor
+ * 
+ */
+public class PolygonSimplifier {
+	// how far a vertex may be from the simplified outline and still be removed
+	private double tolerance;
+	// the largest allowed change in area, as a fraction of the area
+	private double maxAreaChange;
+
+	// totals for everything simplified so far
+	private int polygons;
+	private int verticesBefore;
+	private int verticesAfter;
+	// the sums of the squared vertex counts, which grow like the work of
+	// colliding each polygon with one of the same size
+	private long workBefore;
+	private long workAfter;
+
+	// the last outline a polygon was built from, and its template
+	private Vector[] lastOutline;
+	private PolygonTemplate lastTemplate;
+
+	/**
+	 * Create a simplifier.
+	 * 
+	 * @param tolerance
+	 *            how far a vertex may be from the simplified outline and still
+	 *            be removed; 0 removes only vertices exactly in line with their
+	 *            neighbors
+	 * @param maxAreaChange
+	 *            the largest allowed change in area, as a fraction of the area
+	 */
+	public PolygonSimplifier(double tolerance, double maxAreaChange) {
+		setTolerance(tolerance);
+		setMaxAreaChange(maxAreaChange);
+	}
+
+	/**
+	 * Get the tolerance.
+	 * 
+	 * @return how far a vertex may be from the simplified outline and still be
+	 *         removed
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Set the tolerance.
+	 * 
+	 * @param tolerance
+	 *            how far a vertex may be from the simplified outline and still
+	 *            be removed
+	 */
+	public void setTolerance(double tolerance) {
+		if (tolerance < 0) {
+			throw new IllegalArgumentException(
+					"The tolerance must not be negative.");
+		}
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Get the largest allowed change in area.
+	 * 
+	 * @return the change, as a fraction of the area
+	 */
+	public double getMaxAreaChange() {
+		return maxAreaChange;
+	}
+
+	/**
+	 * Set the largest allowed change in area.
+	 * 
+	 * @param maxAreaChange
+	 *            the change, as a fraction of the area
+	 */
+	public void setMaxAreaChange(double maxAreaChange) {
+		if (maxAreaChange < 0) {
+			throw new IllegalArgumentException(
+					"The area change must not be negative.");
+		}
+		this.maxAreaChange = maxAreaChange;
+	}
+
+	/**
+	 * Build a collision polygon from a <code>java.awt.Polygon</code>, with its
+	 * vertices simplified. If the simplified outline is the same as the last
+	 * one, only moved, the polygon shares the last one's template.
+	 * 
+	 * @param polygon
+	 *            the polygon
+	 * @return the simplified collision polygon
+	 */
+	public CollisionPolygon simplify(Polygon polygon) {
+		ArrayList<Vector> points = new ArrayList<Vector>();
+		PathIterator iter = polygon.getPathIterator(null);
+		double[] coords = new double[6];
+		while (!iter.isDone()) {
+			if (iter.currentSegment(coords) != PathIterator.SEG_CLOSE) {
+				points.add(new Vector(coords[0], coords[1]));
+			}
+			iter.next();
+		}
+		Vector[] outline = simplify(points.toArray(new Vector[points.size()]));
+		if (lastTemplate == null || !sameShape(outline, lastOutline)) {
+			lastOutline = outline;
+			lastTemplate = new PolygonTemplate(outline);
+		}
+		// the template is centered where its own outline was
+		double dx = outline[0].getX() - lastOutline[0].getX();
+		double dy = outline[0].getY() - lastOutline[0].getY();
+		return lastTemplate.instance(new Vector(lastTemplate.originX + dx,
+				lastTemplate.originY + dy), 0);
+	}
+
+	/**
+	 * Tells whether two outlines are the same apart from where they are.
+	 */
+	private static boolean sameShape(Vector[] outline1, Vector[] outline2) {
+		if (outline1.length != outline2.length) {
+			return false;
+		}
+		Vector first1 = outline1[0], first2 = outline2[0];
+		for (int i = 1; i < outline1.length; ++i) {
+			if (outline1[i].getX() - first1.getX() != outline2[i].getX()
+					- first2.getX()
+					|| outline1[i].getY() - first1.getY() != outline2[i]
+							.getY() - first2.getY()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Simplify the outline of a polygon.
+	 * 
+	 * @param vertices
+	 *            the polygon's vertices, in order
+	 * @return the vertices that are kept, in the same order
+	 */
+	public Vector[] simplify(Vector[] vertices) {
+		Vector[] result = vertices;
+		if (vertices.length > 3) {
+			double area = area(vertices);
+			// halve the tolerance until the area is close enough
+			double current = tolerance;
+			for (int attempt = 0; attempt < 4; ++attempt, current /= 2) {
+				Vector[] simplified = simplify(vertices, current);
+				if (simplified.length >= 3
+						&& Math.abs(area(simplified) - area) <= maxAreaChange
+								* Math.abs(area)) {
+					result = simplified;
+					break;
+				}
+			}
+		}
+		++polygons;
+		verticesBefore += vertices.length;
+		verticesAfter += result.length;
+		workBefore += (long) vertices.length * vertices.length;
+		workAfter += (long) result.length * result.length;
+		return result;
+	}
+
+	/**
+	 * Simplify a closed outline with a certain tolerance.
+	 */
+	private static Vector[] simplify(Vector[] vertices, double tolerance) {
+		int n = vertices.length;
+		// Split the outline at the two vertices furthest apart, which are
+		// both kept, and simplify each half.
+		int near = 0, far = 0;
+		double farDist = -1;
+		for (int i = 0; i < n; ++i) {
+			double x = vertices[i].getX(), y = vertices[i].getY();
+			for (int j = i + 1; j < n; ++j) {
+				double dx = vertices[j].getX() - x;
+				double dy = vertices[j].getY() - y;
+				double dist = dx * dx + dy * dy;
+				if (dist > farDist) {
+					farDist = dist;
+					near = i;
+					far = j;
+				}
+			}
+		}
+		boolean[] keep = new boolean[n];
+		keep[near] = true;
+		keep[far] = true;
+		keepFurthest(vertices, near, far, tolerance, keep);
+		keepFurthest(vertices, far, near + n, tolerance, keep);
+		ArrayList<Vector> kept = new ArrayList<Vector>();
+		for (int i = 0; i < n; ++i) {
+			if (keep[i]) {
+				kept.add(vertices[i]);
+			}
+		}
+		return kept.toArray(new Vector[kept.size()]);
+	}
+
+	/**
+	 * Keep the vertex between two kept vertices that is furthest from the line
+	 * through them, if it is further than the tolerance, and then do the same
+	 * on each side of it. The end index may go past the last vertex, and
+	 * wraps around to the first one.
+	 */
+	private static void keepFurthest(Vector[] vertices, int start, int end,
+			double tolerance, boolean[] keep) {
+		if (end - start < 2) {
+			return;
+		}
+		int n = vertices.length;
+		Vector a = vertices[start % n];
+		Vector b = vertices[end % n];
+		double dx = b.getX() - a.getX(), dy = b.getY() - a.getY();
+		double length = Math.sqrt(dx * dx + dy * dy);
+		int furthest = -1;
+		double furthestDist = tolerance;
+		for (int i = start + 1; i < end; ++i) {
+			double rx = vertices[i % n].getX() - a.getX();
+			double ry = vertices[i % n].getY() - a.getY();
+			// distance from the line, or from the point if the ends meet
+			double dist = length == 0 ? Math.sqrt(rx * rx + ry * ry) : Math
+					.abs(rx * dy - ry * dx) / length;
+			if (dist > furthestDist) {
+				furthestDist = dist;
+				furthest = i;
+			}
+		}
+		if (furthest >= 0) {
+			keep[furthest % n] = true;
+			keepFurthest(vertices, start, furthest, tolerance, keep);
+			keepFurthest(vertices, furthest, end, tolerance, keep);
+		}
+	}
+
+	/**
+	 * Get the signed area of a polygon.
+	 */
+	private static double area(Vector[] vertices) {
+		double total = 0;
+		int j = vertices.length - 1;
+		for (int i = 0; i < vertices.length; j = i++) {
+			total += vertices[j].getX() * vertices[i].getY()
+					- vertices[i].getX() * vertices[j].getY();
+		}
+		return total / 2;
+	}
+
+	/**
+	 * Get the number of polygons simplified so far.
+	 * 
+	 * @return the number of polygons
+	 */
+	public int getPolygonCount() {
+		return polygons;
+	}
+
+	/**
+	 * Get the number of vertices removed so far.
+	 * 
+	 * @return the number of vertices removed
+	 */
+	public int getVerticesRemoved() {
+		return verticesBefore - verticesAfter;
+	}
+
+	/**
+	 * Get an estimate of how much collision work has been saved, as a fraction
+	 * of the work the original polygons would have taken. The work of
+	 * colliding two polygons grows with the product of their vertex counts, so
+	 * this is based on the squares of the counts.
+	 * 
+	 * @return the fraction of the collision work saved, between 0 and 1
+	 */
+	public double getCollisionWorkSaved() {
+		if (workBefore == 0) {
+			return 0;
+		}
+		return 1 - (double) workAfter / workBefore;
+	}
+
+	/**
+	 * Describe what has been saved so far.
+	 * 
+	 * @return a short report of the vertices and collision work saved
+	 */
+	public String report() {
+		return String.format(
+				"Simplified %d polygons from %d to %d vertices, about %.0f%% "
+						+ "less collision work", polygons, verticesBefore,
+				verticesAfter, 100 * getCollisionWorkSaved());
+	}
+}
@@ -0,0 +1,201 @@
+package simulation.engine;
+
+/**
+ * The outline of a polygon and everything about it that doesn't depend on
+ * where the polygon is: its vertices relative to its center, its area, its
+ * moment of inertia and how far it reaches. A template never changes, so any
+ * number of polygons can share one, and each of them only keeps where it is
+ * and how far it has turned. Polygons made from the same template, or cloned
+ * from each other, share it.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class PolygonTemplate {
+	// the vertices, relative to the center and unrotated
+	private final double[] xs, ys;
+	// for the edge ending at each vertex, how much x changes per unit of y
+	private final double[] edgeSlopes;
+	private final double area;
+	private final double momentOfInertia;
+	// the distance from the center to the furthest vertex
+	final double boundingRadius;
+	// 1 if the vertices go counterclockwise, -1 if clockwise; the outward
+	// normal of an edge is (dy, -dx) times this
+	final double winding;
+	// where the center of the vertices the template was made from is
+	final double originX, originY;
+	// whether every corner turns the same way, so that the edge normals are
+	// the only axes that can separate the polygon from another
+	final boolean convex;
+
+	/**
+	 * Create a template from the vertices of a polygon. Only their positions
+	 * relative to each other matter; the template is centered on their
+	 * center.
+	 *
+	 * @param vertices
+	 *            the vertices
+	 */
+	public PolygonTemplate(Vector[] vertices) {
+		if (vertices.length < 3) {
+			throw new IllegalArgumentException(
+					"CollisionPolygon must have at least 3 vertices.");
+		}
+		int n = vertices.length;
+		xs = new double[n];
+		ys = new double[n];
+		for (int i = 0; i < n; ++i) {
+			xs[i] = vertices[i].getX();
+			ys[i] = vertices[i].getY();
+		}
+
+		// first, calculate area and center by adding stuff
+		double atotal = 0, xtotal = 0, ytotal = 0;
+		int j = n - 1;
+		for (int i = 0; i < n; j = i++) {
+			double v1x = xs[j], v1y = ys[j];
+			double v2x = xs[i], v2y = ys[i];
+			double temp = v1x * v2y - v2x * v1y;
+			atotal += temp;
+			xtotal += (v1x + v2x) * temp;
+			ytotal += (v1y + v2y) * temp;
+
+		}
+		area = .5 * Math.abs(atotal);
+		winding = atotal < 0 ? -1 : 1;
+		double coeff = 1 / (3 * atotal);
+		originX = coeff * xtotal;
+		originY = coeff * ytotal;
+		// next, move the vertices so that the center is at the origin
+		double reach = 0;
+		for (int i = 0; i < n; ++i) {
+			xs[i] -= originX;
+			ys[i] -= originY;
+			reach = Math.max(reach, Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i]));
+		}
+		boundingRadius = reach;
+		// finally, calculate moment of inertia
+		double mtotal = 0;
+		j = n - 1;
+		for (int i = 0; i < n; j = i++) {
+			double cv1x = xs[j], cv1y = ys[j];
+			double cv2x = xs[i], cv2y = ys[i];
+			// formula from http://www.gvu.gatech.edu/~jarek/demos/inertia/
+			mtotal += (cv2y * cv1x - cv2x * cv1y)
+					* (cv1x * cv1x + cv1y * cv1y + cv1x * cv2x + cv1y * cv2y
+							+ cv2x * cv2x + cv2y * cv2y);
+		}
+		momentOfInertia = Math.abs(mtotal) / 12;
+		// a corner turns the wrong way if its edges' cross product has the
+		// opposite sign from the winding
+		boolean turnsOneWay = true;
+		for (int i = 0; i < n; ++i) {
+			int prev = (i + n - 1) % n, next = (i + 1) % n;
+			double cross = (xs[i] - xs[prev]) * (ys[next] - ys[i])
+					- (ys[i] - ys[prev]) * (xs[next] - xs[i]);
+			if (cross * winding < 0) {
+				turnsOneWay = false;
+				break;
+			}
+		}
+		convex = turnsOneWay;
+		edgeSlopes = new double[n];
+		j = n - 1;
+		for (int i = 0; i < n; j = i++) {
+			double dy = ys[i] - ys[j];
+			// a flat edge never crosses a horizontal ray
+			edgeSlopes[i] = dy == 0 ? 0 : (xs[i] - xs[j]) / dy;
+		}
+	}
+
+	/**
+	 * Create a polygon of this shape.
+	 *
+	 * @param center
+	 *            where the polygon's center is
+	 * @param rotation
+	 *            how far the polygon is turned from the template
+	 * @return the polygon
+	 */
+	public CollisionPolygon instance(Vector center, double rotation) {
+		return new CollisionPolygon(this, center, rotation);
+	}
+
+	/**
+	 * Get the number of vertices.
+	 *
+	 * @return how many vertices there are
+	 */
+	public int numVertices() {
+		return xs.length;
+	}
+
+	/**
+	 * Get the x coordinate of a vertex, relative to the center.
+	 *
+	 * @param i
+	 *            the vertex's index
+	 * @return the vertex's x coordinate
+	 */
+	public double vertexX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Get the y coordinate of a vertex, relative to the center.
+	 *
+	 * @param i
+	 *            the vertex's index
+	 * @return the vertex's y coordinate
+	 */
+	public double vertexY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * Tests if the outline contains a point, relative to the center and
+	 * unrotated.
+	 * 
+	 * @param px
+	 *            the point's x coordinate
+	 * @param py
+	 *            the point's y coordinate
+	 * @return whether or not the point is in the outline
+	 */
+	boolean contains(double px, double py) {
+		/*
+		 * To calculate this, I draw a ray beginning at point and going to the
+		 * right. I count the number of edges that intersects this ray; if it is
+		 * odd, point in polygon; if it is even, point not in polygon. An edge
+		 * intersects if its ends are on opposite sides of the ray and it
+		 * crosses the ray's line to the right of the point.
+		 */
+		boolean inside = false;
+		int j = xs.length - 1;
+		for (int i = 0; i < xs.length; j = i++) {
+			inside ^= (ys[j] > py) != (ys[i] > py)
+					& px < xs[j] + (py - ys[j]) * edgeSlopes[i];
+		}
+		return inside;
+	}
+
+	/**
+	 * Get the area of the polygon.
+	 *
+	 * @return the area
+	 */
+	public double area() {
+		return area;
+	}
+
+	/**
+	 * Get the moment of inertia of the polygon around its center, for a
+	 * density of 1.
+	 *
+	 * @return the moment of inertia
+	 */
+	public double momentOfInertia() {
+		return momentOfInertia;
+	}
+}
@@ -0,0 +1,345 @@
+package simulation.engine;
+
+import java.util.List;
+
+/**
+ * Steps bodies with extended position-based dynamics (XPBD). Instead of
+ * changing velocities with impulses, every body is first moved as if nothing
+ * were in its way, and then contacts, springs and joints each move their
+ * bodies just far enough to agree with them. A constraint's compliance says
+ * how far it may give: contacts and joints have none, and a spring's is the
+ * inverse of its strength. Afterwards the bodies' velocities are taken from
+ * how far they moved, and a few passes over the contacts add bounce and
+ * friction. Corrections never overshoot, so this stays stable with large
+ * steps and a single pass over the constraints.
+ * <p>
+ * A correction moves the two bodies apart or together along a direction at
+ * a point on each, splitting the movement between them by how easily each
+ * one moves there.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class PositionSolver {
+	// how many times bounce and friction are applied to the contacts, so that
+	// bodies touching at two points settle on both
+	private static final int VELOCITY_ITERATIONS = 4;
+
+	// the contacts found in the current step, for the velocity pass: the
+	// bodies, the direction that pushes the first out of the second, where
+	// the bodies touch relative to each center, how fast they were moving
+	// together along the normal before they were corrected, and how far
+	// they were pushed apart
+	private Body[] contactBody1 = new Body[0], contactBody2 = new Body[0];
+	private double[] normalX = new double[0], normalY = new double[0];
+	private double[] arm1X = new double[0], arm1Y = new double[0];
+	private double[] arm2X = new double[0], arm2Y = new double[0];
+	private double[] approachSpeed = new double[0];
+	private double[] pushed = new double[0];
+	private int contactCount;
+
+	// the amount of time in the current step
+	private double step;
+
+	/**
+	 * Start a step, forgetting the last step's contacts.
+	 *
+	 * @param amount
+	 *            the number of time units in the step
+	 */
+	void begin(double amount) {
+		step = amount;
+		for (int i = 0; i < contactCount; ++i) {
+			contactBody1[i] = null;
+			contactBody2[i] = null;
+		}
+		contactCount = 0;
+	}
+
+	/**
+	 * Push two bodies out of each other, if they overlap.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param contact
+	 *            where to put the collision test's result
+	 * @return whether the bodies overlapped
+	 */
+	boolean contact(Body b1, Body b2, ContactBuffer contact) {
+		if (b1.inverseMass() + b2.inverseMass() == 0) {
+			// neither can be pushed
+			return false;
+		}
+		CollisionShape shape1 = b1.getShape(), shape2 = b2.getShape();
+		if (!shape1.collide(shape2, contact)) {
+			return false;
+		}
+		double transX = contact.translationX();
+		double transY = contact.translationY();
+		double depth = Math.sqrt(transX * transX + transY * transY);
+		if (depth == 0) {
+			return true;
+		}
+		double nx = transX / depth, ny = transY / depth;
+		double c1x = shape1.centerX(), c1y = shape1.centerY();
+		double c2x = shape2.centerX(), c2y = shape2.centerY();
+		double im1 = b1.inverseMass(), ii1 = b1.inverseMomentOfInertia();
+		double im2 = b2.inverseMass(), ii2 = b2.inverseMomentOfInertia();
+		if (contact.contactCount() == 2) {
+			// Sides that touch are moved straight apart and turned to lie
+			// flat, the same as the impulse code does; pushing at each end
+			// in turn would leave them tilted.
+			double lambda = depth / (im1 + im2);
+			double turn = contact.turn();
+			double turnShare = turn / (ii1 + ii2);
+			if (!b1.fixed()) {
+				shape1.moveRotating(turnShare * ii1, im1 * lambda * nx, im1
+						* lambda * ny);
+			}
+			if (!b2.fixed()) {
+				shape2.moveRotating(-turnShare * ii2, -im2 * lambda * nx,
+						-im2 * lambda * ny);
+			}
+			remember(b1, b2, nx, ny, contact.contactX() - c1x, contact
+					.contactY()
+					- c1y, contact.contactX() - c2x, contact.contactY() - c2y,
+					lambda / 2);
+			remember(b1, b2, nx, ny, contact.secondContactX() - c1x, contact
+					.secondContactY()
+					- c1y, contact.secondContactX() - c2x, contact
+					.secondContactY()
+					- c2y, lambda / 2);
+			return true;
+		}
+		double r1x = contact.contactX() - c1x, r1y = contact.contactY() - c1y;
+		double r2x = contact.contactX() - c2x, r2y = contact.contactY() - c2y;
+		double lever1 = r1x * ny - r1y * nx;
+		double lever2 = r2x * ny - r2y * nx;
+		double w = im1 + im2 + ii1 * lever1 * lever1 + ii2 * lever2 * lever2;
+		double lambda = depth / w;
+		if (!b1.fixed()) {
+			shape1.moveRotating(ii1 * lambda * lever1, im1 * lambda * nx, im1
+					* lambda * ny);
+		}
+		if (!b2.fixed()) {
+			shape2.moveRotating(-ii2 * lambda * lever2, -im2 * lambda * nx,
+					-im2 * lambda * ny);
+		}
+		remember(b1, b2, nx, ny, r1x, r1y, r2x, r2y, lambda);
+		return true;
+	}
+
+	/**
+	 * Keep a contact for the velocity pass.
+	 */
+	private void remember(Body b1, Body b2, double nx, double ny, double r1x,
+			double r1y, double r2x, double r2y, double lambda) {
+		if (contactCount == contactBody1.length) {
+			grow(Math.max(16, 2 * contactCount));
+		}
+		int i = contactCount++;
+		contactBody1[i] = b1;
+		contactBody2[i] = b2;
+		normalX[i] = nx;
+		normalY[i] = ny;
+		arm1X[i] = r1x;
+		arm1Y[i] = r1y;
+		arm2X[i] = r2x;
+		arm2Y[i] = r2y;
+		// positive if the first body is moving away from the second
+		approachSpeed[i] = nx
+				* (b1.velocityAtX(b1.getShape().centerY() + r1y) - b2
+						.velocityAtX(b2.getShape().centerY() + r2y))
+				+ ny
+				* (b1.velocityAtY(b1.getShape().centerX() + r1x) - b2
+						.velocityAtY(b2.getShape().centerX() + r2x));
+		pushed[i] = lambda;
+	}
+
+	private void grow(int capacity) {
+		contactBody1 = copy(contactBody1, capacity);
+		contactBody2 = copy(contactBody2, capacity);
+		normalX = copy(normalX, capacity);
+		normalY = copy(normalY, capacity);
+		arm1X = copy(arm1X, capacity);
+		arm1Y = copy(arm1Y, capacity);
+		arm2X = copy(arm2X, capacity);
+		arm2Y = copy(arm2Y, capacity);
+		approachSpeed = copy(approachSpeed, capacity);
+		pushed = copy(pushed, capacity);
+	}
+
+	private double[] copy(double[] array, int capacity) {
+		double[] result = new double[capacity];
+		System.arraycopy(array, 0, result, 0, contactCount);
+		return result;
+	}
+
+	private Body[] copy(Body[] array, int capacity) {
+		Body[] result = new Body[capacity];
+		System.arraycopy(array, 0, result, 0, contactCount);
+		return result;
+	}
+
+	/**
+	 * Pull every spring's ends toward its natural length, letting each give
+	 * by its compliance.
+	 *
+	 * @param springs
+	 *            the springs, which the caller must keep from changing
+	 */
+	void projectSprings(List<Spring> springs) {
+		for (Spring s : springs) {
+			if (s.strength() <= 0) {
+				continue;
+			}
+			Body b1 = s.connectedBody1(), b2 = s.connectedBody2();
+			Vector p1 = s.vertex1(), p2 = s.vertex2();
+			double dx = p2.getX() - p1.getX(), dy = p2.getY() - p1.getY();
+			double dist = Math.sqrt(dx * dx + dy * dy);
+			if (dist == 0) {
+				continue;
+			}
+			CollisionShape shape1 = b1.getShape(), shape2 = b2.getShape();
+			correct(b1, b2, p1.getX() - shape1.centerX(), p1.getY()
+					- shape1.centerY(), p2.getX() - shape2.centerX(), p2
+					.getY()
+					- shape2.centerY(), dx / dist, dy / dist, dist
+					- s.naturalLength(), 1 / s.strength(), step);
+		}
+	}
+
+	/**
+	 * Move two bodies so that a point on the second comes closer to a point on
+	 * the first along a direction.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param r1x
+	 *            the x coordinate of the first point, relative to the first
+	 *            body's center
+	 * @param r1y
+	 *            the y coordinate of the first point, relative to the first
+	 *            body's center
+	 * @param r2x
+	 *            the x coordinate of the second point, relative to the second
+	 *            body's center
+	 * @param r2y
+	 *            the y coordinate of the second point, relative to the second
+	 *            body's center
+	 * @param nx
+	 *            the x coordinate of the unit direction
+	 * @param ny
+	 *            the y coordinate of the unit direction
+	 * @param error
+	 *            how much closer the points should be, or how much further
+	 *            apart if it is negative
+	 * @param compliance
+	 *            how far the constraint gives per unit of force; 0 for a rigid
+	 *            one
+	 * @param amount
+	 *            the number of time units in the step
+	 */
+	static void correct(Body b1, Body b2, double r1x, double r1y, double r2x,
+			double r2y, double nx, double ny, double error, double compliance,
+			double amount) {
+		double im1 = b1.inverseMass(), ii1 = b1.inverseMomentOfInertia();
+		double im2 = b2.inverseMass(), ii2 = b2.inverseMomentOfInertia();
+		double lever1 = r1x * ny - r1y * nx;
+		double lever2 = r2x * ny - r2y * nx;
+		double w = im1 + im2 + ii1 * lever1 * lever1 + ii2 * lever2 * lever2
+				+ compliance / (amount * amount);
+		if (w == 0) {
+			return;
+		}
+		double lambda = error / w;
+		if (!b1.fixed()) {
+			b1.getShape().moveRotating(ii1 * lambda * lever1,
+					im1 * lambda * nx, im1 * lambda * ny);
+		}
+		if (!b2.fixed()) {
+			b2.getShape().moveRotating(-ii2 * lambda * lever2,
+					-im2 * lambda * nx, -im2 * lambda * ny);
+		}
+	}
+
+	/**
+	 * Add bounce and friction to the contacts, now that the bodies'
+	 * velocities have been found from how they moved. Contacts that were
+	 * approaching slower than gravity can speed them up in a step don't
+	 * bounce, so resting bodies stay at rest.
+	 *
+	 * @param gravity
+	 *            the simulation's gravity
+	 */
+	void solveVelocities(double gravity) {
+		for (int iteration = 0; iteration < VELOCITY_ITERATIONS; ++iteration) {
+			settle(2 * Math.abs(gravity) * step);
+		}
+	}
+
+	/**
+	 * Go over the contacts once for <code>solveVelocities</code>.
+	 */
+	private void settle(double restingSpeed) {
+		for (int i = 0; i < contactCount; ++i) {
+			if (pushed[i] == 0) {
+				// the bodies only just touched
+				continue;
+			}
+			Body b1 = contactBody1[i], b2 = contactBody2[i];
+			CollisionShape shape1 = b1.getShape(), shape2 = b2.getShape();
+			double nx = normalX[i], ny = normalY[i];
+			double p1x = shape1.centerX() + arm1X[i];
+			double p1y = shape1.centerY() + arm1Y[i];
+			double p2x = shape2.centerX() + arm2X[i];
+			double p2y = shape2.centerY() + arm2Y[i];
+			double relX = b1.velocityAtX(p1y) - b2.velocityAtX(p2y);
+			double relY = b1.velocityAtY(p1x) - b2.velocityAtY(p2x);
+			double normal = relX * nx + relY * ny;
+			double tangentX = relX - normal * nx, tangentY = relY - normal
+					* ny;
+			double tangent = Math.sqrt(tangentX * tangentX + tangentY
+					* tangentY);
+			double changeX = 0, changeY = 0;
+			// friction, limited by how hard the contact pushed
+			if (tangent > 0) {
+				double slow = Math.min(b1.friction() * b2.friction()
+						* pushed[i] / step, tangent);
+				changeX -= tangentX / tangent * slow;
+				changeY -= tangentY / tangent * slow;
+			}
+			// bounce
+			double bounce = b1.bounciness() * b2.bounciness();
+			if (-approachSpeed[i] <= restingSpeed) {
+				bounce = 0;
+			}
+			double target = Math.max(-bounce * approachSpeed[i], 0);
+			// Bodies that were pushed apart this step leave at the bounce
+			// speed, even if the push itself sent them apart faster; that
+			// speed came from the correction, not from anything real.
+			changeX += (target - normal) * nx;
+			changeY += (target - normal) * ny;
+			double change = Math.sqrt(changeX * changeX + changeY * changeY);
+			if (change == 0) {
+				continue;
+			}
+			double ux = changeX / change, uy = changeY / change;
+			double lever1 = arm1X[i] * uy - arm1Y[i] * ux;
+			double lever2 = arm2X[i] * uy - arm2Y[i] * ux;
+			double w = b1.inverseMass() + b2.inverseMass()
+					+ b1.inverseMomentOfInertia() * lever1 * lever1
+					+ b2.inverseMomentOfInertia() * lever2 * lever2;
+			if (w == 0) {
+				continue;
+			}
+			double impulse = change / w;
+			b1.addImpulse(ux * impulse, uy * impulse, p1x, p1y);
+			b2.addImpulse(-ux * impulse, -uy * impulse, p2x, p2y);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package simulation.engine;
+
+import java.util.EventObject;
+
+/**
+ * Represents a body starting or stopping to overlap a sensor in a
+ * <code>Simulation</code>. The event encapsulates the <code>Simulation</code>
+ * that fired it, the sensor and the body that entered or left it.
+ * 
+ * @author Tikhon Jelvis
+ * 
+ */
+@SuppressWarnings("serial")
+public class SensorEvent extends EventObject {
+
+	private final Body sensor;
+	private final Body body;
+
+	/**
+	 * Creates a <code>SensorEvent</code> that represents a body entering or
+	 * leaving a sensor.
+	 * 
+	 * @param source
+	 *            - the <code>Simulation</code> that fired this event.
+	 * @param sensor
+	 *            - the sensor.
+	 * @param body
+	 *            - the body that entered or left the sensor.
+	 */
+	public SensorEvent(Simulation source, Body sensor, Body body) {
+		super(source);
+
+		this.sensor = sensor;
+		this.body = body;
+	}
+
+	/**
+	 * Returns the sensor that was entered or left.
+	 * 
+	 * @return the sensor.
+	 */
+	public Body getSensor() {
+		return sensor;
+	}
+
+	/**
+	 * Returns the body that entered or left the sensor.
+	 * 
+	 * @return the body that entered or left the sensor.
+	 */
+	public Body getBody() {
+		return body;
+	}
+
+}
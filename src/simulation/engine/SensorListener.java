@@ -0,0 +1,26 @@
+package simulation.engine;
+
+import java.util.EventListener;
+
+/**
+ * This listener is notified when bodies start or stop overlapping sensors.
+ * The events of a step are collected while the simulation steps and are all
+ * fired together at the end of it, once per body and sensor. A body that
+ * overlaps a sensor in any of a step's substeps has entered it, so even a
+ * fast body that passes right through is noticed.
+ * 
+ * @author Tikhon Jelvis
+ * 
+ */
+public interface SensorListener extends EventListener {
+
+	/**
+	 * Invoked when a body starts to overlap a sensor.
+	 */
+	void bodyEntered(SensorEvent e);
+
+	/**
+	 * Invoked when a body stops overlapping a sensor.
+	 */
+	void bodyExited(SensorEvent e);
+}
@@ -0,0 +1,179 @@
+package simulation.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps track of which bodies overlap which sensors. The broad phase adds
+ * every overlap it finds during a step, and at the end of the step the
+ * overlaps are compared with the last step's to find the bodies that entered
+ * and left each sensor. Pairs are keyed by the sensor's and the body's ids,
+ * in open-addressing hash tables, so noting an overlap creates no objects.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class SensorOverlaps {
+	// the overlaps found in this step and the last
+	private PairSet current = new PairSet();
+	private PairSet previous = new PairSet();
+
+	/**
+	 * Note that a body overlaps a sensor in this step.
+	 *
+	 * @param sensor
+	 *            the sensor
+	 * @param body
+	 *            the body overlapping it
+	 */
+	void add(Body sensor, Body body) {
+		current.add(sensor, body);
+	}
+
+	/**
+	 * End the step, and find which pairs started and stopped overlapping in
+	 * it.
+	 *
+	 * @param entered
+	 *            where to add the pairs that overlap now but did not before,
+	 *            each as the sensor and the body
+	 * @param exited
+	 *            where to add the pairs that overlapped before but do not now
+	 */
+	void finish(List<Body[]> entered, List<Body[]> exited) {
+		current.addMissing(previous, entered);
+		previous.addMissing(current, exited);
+		PairSet swap = previous;
+		previous = current;
+		current = swap;
+		current.clear();
+	}
+
+	/**
+	 * Forget every overlap, without reporting them as exited.
+	 */
+	void clear() {
+		current.clear();
+		previous.clear();
+	}
+
+	/**
+	 * Forget every overlap a body is in, as a sensor or not, without
+	 * reporting them as exited.
+	 *
+	 * @param body
+	 *            the body
+	 */
+	void remove(Body body) {
+		current.remove(body);
+		previous.remove(body);
+	}
+
+	/**
+	 * A set of sensor and body pairs, which remembers the order they were
+	 * added in.
+	 */
+	private static final class PairSet {
+		// the pairs in the order they were added, each as its key, the sensor
+		// and the body
+		private long[] keys = new long[16];
+		private Body[] sensors = new Body[16];
+		private Body[] bodies = new Body[16];
+		private int size;
+		// for each slot, one more than the index of the pair in it, or 0 if
+		// it is empty
+		private int[] slots = new int[32];
+
+		void add(Body sensor, Body body) {
+			long key = (long) sensor.id() << 32 | body.id();
+			int slot = slot(key);
+			if (slots[slot] != 0) {
+				return;
+			}
+			if (size == keys.length) {
+				grow();
+				slot = slot(key);
+			}
+			keys[size] = key;
+			sensors[size] = sensor;
+			bodies[size] = body;
+			slots[slot] = ++size;
+		}
+
+		boolean contains(long key) {
+			return slots[slot(key)] != 0;
+		}
+
+		/**
+		 * Add the pairs in this set that are not in another to a list.
+		 */
+		void addMissing(PairSet other, List<Body[]> list) {
+			for (int i = 0; i < size; ++i) {
+				if (!other.contains(keys[i])) {
+					list.add(new Body[] { sensors[i], bodies[i] });
+				}
+			}
+		}
+
+		/**
+		 * Remove every pair a body is in, keeping the others in order.
+		 */
+		void remove(Body body) {
+			int kept = 0;
+			for (int i = 0; i < size; ++i) {
+				if (sensors[i] != body && bodies[i] != body) {
+					keys[kept] = keys[i];
+					sensors[kept] = sensors[i];
+					bodies[kept] = bodies[i];
+					++kept;
+				}
+			}
+			if (kept == size) {
+				return;
+			}
+			Arrays.fill(sensors, kept, size, null);
+			Arrays.fill(bodies, kept, size, null);
+			size = kept;
+			Arrays.fill(slots, 0);
+			for (int i = 0; i < size; ++i) {
+				slots[slot(keys[i])] = i + 1;
+			}
+		}
+
+		void clear() {
+			if (size > 0) {
+				Arrays.fill(slots, 0);
+				// don't hold on to the bodies
+				Arrays.fill(sensors, 0, size, null);
+				Arrays.fill(bodies, 0, size, null);
+				size = 0;
+			}
+		}
+
+		/**
+		 * Get the slot a key is in, or the empty slot where it would go.
+		 */
+		private int slot(long key) {
+			int mask = slots.length - 1;
+			int i = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+			while (slots[i] != 0 && keys[slots[i] - 1] != key) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		/**
+		 * Double the room for pairs, keeping the table at most half full.
+		 */
+		private void grow() {
+			int capacity = 2 * keys.length;
+			keys = Arrays.copyOf(keys, capacity);
+			sensors = Arrays.copyOf(sensors, capacity);
+			bodies = Arrays.copyOf(bodies, capacity);
+			slots = new int[2 * capacity];
+			for (int i = 0; i < size; ++i) {
+				slots[slot(keys[i])] = i + 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package simulation.engine;
+
+/**
+ * Remembers, for each pair of bodies the broad phase finds, an axis that
+ * separated them the last time they were tested. Bodies only move a little
+ * between steps, so the same axis usually still separates them, and checking
+ * it takes one projection of each shape instead of a full collision test. The
+ * pairs are kept in an open-addressing hash table keyed by the bodies' ids;
+ * pairs that have not been tested for a step are dropped when the table
+ * fills.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class SeparationCache {
+	private long[] keys = new long[64];
+	private double[] axisX = new double[64];
+	private double[] axisY = new double[64];
+	private boolean[] hasAxis = new boolean[64];
+	// the step each pair was last tested in
+	private int[] used = new int[64];
+	private int size;
+	private int step;
+
+	// the slot of the pair being tested
+	private int slot;
+
+	private final double[] range1 = new double[4];
+	private final double[] range2 = new double[4];
+	private final double[] normal = new double[2];
+
+	/**
+	 * Start a new step. Pairs that are not tested in this step or the next are
+	 * forgotten.
+	 */
+	void nextStep() {
+		++step;
+	}
+
+	/**
+	 * Tells whether the axis remembered for a pair still separates the
+	 * bodies. This also makes the pair the one that <code>update</code>
+	 * applies to.
+	 *
+	 * @param b1
+	 *            one body
+	 * @param b2
+	 *            the other body
+	 * @return whether the bodies are known to be apart
+	 */
+	boolean separated(Body b1, Body b2) {
+		slot = find(b1.id(), b2.id());
+		used[slot] = step;
+		return hasAxis[slot]
+				&& separates(b1.getShape(), b2.getShape(), axisX[slot],
+						axisY[slot]);
+	}
+
+	/**
+	 * Remember what happened to the pair last passed to
+	 * <code>separated</code>. Bodies that touched have no separating axis;
+	 * for bodies that did not, one is looked for among the line between their
+	 * centers and their face normals.
+	 *
+	 * @param b1
+	 *            one body
+	 * @param b2
+	 *            the other body
+	 * @param touching
+	 *            whether the bodies collided
+	 */
+	void update(Body b1, Body b2, boolean touching) {
+		hasAxis[slot] = !touching
+				&& findAxis(b1.getShape(), b2.getShape());
+		if (hasAxis[slot]) {
+			axisX[slot] = normal[0];
+			axisY[slot] = normal[1];
+		}
+	}
+
+	/**
+	 * Tells whether a sensor and a body overlap, and remembers what happened
+	 * for the pair last passed to <code>separated</code>, like
+	 * <code>update</code>. Any axis that separates the shapes ends the test
+	 * at once. Two circles, or two boxes or convex polygons, that no axis
+	 * separates must overlap, so only other pairs need the full collision
+	 * test.
+	 *
+	 * @param b1
+	 *            one body
+	 * @param b2
+	 *            the other body
+	 * @param scratch
+	 *            scratch space for the full collision test
+	 * @return whether the bodies overlap
+	 */
+	boolean overlaps(Body b1, Body b2, ContactBuffer scratch) {
+		CollisionShape s1 = b1.getShape(), s2 = b2.getShape();
+		hasAxis[slot] = findAxis(s1, s2);
+		if (hasAxis[slot]) {
+			axisX[slot] = normal[0];
+			axisY[slot] = normal[1];
+			return false;
+		}
+		if (s1 instanceof CollisionCircle && s2 instanceof CollisionCircle
+				|| hasFlatSides(s1) && hasFlatSides(s2)) {
+			return true;
+		}
+		return s1.overlaps(s2, scratch);
+	}
+
+	/**
+	 * Tells whether a shape is convex and its face normals are all of its
+	 * sides' normals.
+	 */
+	private static boolean hasFlatSides(CollisionShape shape) {
+		return shape instanceof CollisionBox
+				|| shape instanceof CollisionPolygon
+				&& ((CollisionPolygon) shape).getTemplate().convex;
+	}
+
+	/**
+	 * Look for an axis that separates two shapes and put it in
+	 * <code>normal</code>.
+	 */
+	private boolean findAxis(CollisionShape s1, CollisionShape s2) {
+		// the line between the centers separates most shapes that are apart,
+		// and is the only axis that separates two circles
+		double dx = s2.centerX() - s1.centerX();
+		double dy = s2.centerY() - s1.centerY();
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length > 0) {
+			normal[0] = dx / length;
+			normal[1] = dy / length;
+			if (separates(s1, s2, normal[0], normal[1])) {
+				return true;
+			}
+		}
+		for (int i = 0; i < s1.numFaceNormals(); ++i) {
+			s1.faceNormal(i, normal);
+			if (separates(s1, s2, normal[0], normal[1])) {
+				return true;
+			}
+		}
+		for (int i = 0; i < s2.numFaceNormals(); ++i) {
+			s2.faceNormal(i, normal);
+			if (separates(s1, s2, normal[0], normal[1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether two shapes do not overlap along an axis.
+	 */
+	private boolean separates(CollisionShape s1, CollisionShape s2,
+			double x, double y) {
+		s1.project(x, y, range1);
+		s2.project(x, y, range2);
+		return range1[1] < range2[0] || range2[1] < range1[0];
+	}
+
+	/**
+	 * Find the slot of a pair, adding the pair if it is not there.
+	 */
+	private int find(int id1, int id2) {
+		// ids start at 1, so no pair has the empty key 0
+		long key = id1 < id2 ? (long) id1 << 32 | id2 : (long) id2 << 32
+				| id1;
+		int i = indexOf(key, keys);
+		if (keys[i] == key) {
+			return i;
+		}
+		if (2 * (size + 1) > keys.length) {
+			purge();
+			i = indexOf(key, keys);
+		}
+		keys[i] = key;
+		hasAxis[i] = false;
+		++size;
+		return i;
+	}
+
+	/**
+	 * Get the slot a key is in, or the empty slot where it would go.
+	 */
+	private static int indexOf(long key, long[] keys) {
+		int mask = keys.length - 1;
+		int i = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+		while (keys[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Rebuild the table without the pairs that were not tested in this step
+	 * or the last, making it bigger if it is still too full.
+	 */
+	private void purge() {
+		int kept = 0;
+		for (int i = 0; i < keys.length; ++i) {
+			if (keys[i] != 0 && used[i] >= step - 1) {
+				++kept;
+			}
+		}
+		int capacity = keys.length;
+		while (2 * (kept + 1) > capacity) {
+			capacity *= 2;
+		}
+		long[] oldKeys = keys;
+		double[] oldX = axisX, oldY = axisY;
+		boolean[] oldHasAxis = hasAxis;
+		int[] oldUsed = used;
+		keys = new long[capacity];
+		axisX = new double[capacity];
+		axisY = new double[capacity];
+		hasAxis = new boolean[capacity];
+		used = new int[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != 0 && oldUsed[i] >= step - 1) {
+				int j = indexOf(oldKeys[i], keys);
+				keys[j] = oldKeys[i];
+				axisX[j] = oldX[i];
+				axisY[j] = oldY[i];
+				hasAxis[j] = oldHasAxis[i];
+				used[j] = oldUsed[i];
+				++size;
+			}
+		}
+	}
+}
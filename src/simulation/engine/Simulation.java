@@ -2,10 +2,16 @@ package simulation.engine;
 
 import java.awt.Color;
 import java.awt.Point;
-import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  * A system of objects.
@@ -18,17 +24,90 @@ public class Simulation {
     // Constants:
     public static final double DEFAULT_GRAVITY = 0;
 
-    private List<Body> bodies;// Always use this one.
-
-    private ArrayList<Body> bodiesArrayList;// Do not use! Ever!
+    // How far a body may move in one of its own steps, as a fraction of its
+    // size, to be stepped less often than every substep.
+    private static final double MAX_BIN_TRAVEL = .05;
+
+    // How far the springs on a body may swing it in one of its own steps, as
+    // a phase in radians, to be stepped less often than every substep.
+    private static final double MAX_BIN_SPRING_PHASE = .2;
+
+    // Bodies are packed densely and found by their handles:
+    private final BodyStore bodies = new BodyStore();
+
+    // Multi-rate stepping, by each body's index in the store: how many
+    // substeps go by between steps of the body, whether it is stepped in the
+    // current one, how much time it has fallen behind, and the total strength
+    // of the springs pulling on it. A body removed from the store takes the
+    // last body's entries with its index:
+    private int[] stepInterval = new int[16];
+    private boolean[] stepDue = new boolean[16];
+    private double[] stepLag = new double[16];
+    private double[] stepStiffness = new double[16];
+
+    // Where each body was at the start of a position-based step, by its
+    // index in the store:
+    private double[] previousX = new double[0], previousY = new double[0],
+            previousRotation = new double[0];
+
+    // While a batch is open, the bodies added and removed in it so far; their
+    // events are fired when the outermost batch ends:
+    private int batchDepth;
+    private LinkedHashSet<Body> batchAdded = new LinkedHashSet<Body>();
+    private LinkedHashSet<Body> batchRemoved = new LinkedHashSet<Body>();
 
     private List<Spring> springs;// Always use this one.
 
     private ArrayList<Spring> springsArrayList;// Do not even think of this one!
 
+    private List<Joint> joints = Collections
+            .synchronizedList(new ArrayList<Joint>());
+
+    // How many times the joints are solved each step:
+    private int jointIterations = 8;
+
+    // Finds colliding pairs; rebuilt whenever the set of bodies changes.
+    private BroadPhase broadPhase = new BroadPhase();
+
+    private boolean bodiesChanged;
+
+    // Circles that are simulated without bodies, for very large numbers:
+    private ParticleSystem particles = new ParticleSystem();
+
     // Some options:
     private double gravity;
 
+    // Slow bodies may be stepped only every 2, 4, ... up to 2^maxStepLevel
+    // substeps; 0 steps every body every substep.
+    private int maxStepLevel;
+
+    private final double[] bounds = new double[4];
+
+    // The smallest box around every body as drawn. The bodies that can move
+    // are measured again after every substep and the box grows as bodies are
+    // added, so it is only worked out from scratch when a body on its edge is
+    // removed, and then only once somebody asks for it:
+    private final double[] extent = new double[4];
+
+    private boolean extentStale = true;
+
+    // The springs packed into arrays; repacked whenever a spring is added.
+    private SpringStore springStore = new SpringStore();
+
+    private boolean springsChanged;
+
+    private boolean parallelSprings;
+
+    // Steps the springs together when they are stepped implicitly.
+    private SpringSolver springSolver = new SpringSolver();
+
+    private boolean implicitSprings;
+
+    // Steps bodies by their positions instead of with impulses, if on:
+    private PositionSolver positionSolver = new PositionSolver();
+
+    private boolean positionBased;
+
     private Color wallColor = Color.black;
 
     // Event listeners:
@@ -36,6 +115,27 @@ public class Simulation {
 
     private ArrayList<BodySetListener> bodySetListeners = new ArrayList<BodySetListener>();
 
+    private ArrayList<SensorListener> sensorListeners = new ArrayList<SensorListener>();
+
+    // Listeners that hear about changes to any of the bodies. While there are
+    // any, every body has the forwarder as one of its own listeners; they are
+    // copied on change, so a body firing an event takes no lock:
+    private CopyOnWriteArrayList<ChangeListener> bodyChangeListeners = new CopyOnWriteArrayList<ChangeListener>();
+
+    private final ChangeListener bodyChangeForwarder = new ChangeListener() {
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            for (ChangeListener listener : bodyChangeListeners) {
+                listener.stateChanged(e);
+            }
+        }
+    };
+
+    // The pairs that entered and left sensors in the last step, each as the
+    // sensor and the body:
+    private ArrayList<Body[]> sensorsEntered = new ArrayList<Body[]>();
+    private ArrayList<Body[]> sensorsExited = new ArrayList<Body[]>();
+
     // Is the simulation playing?
     private boolean playing;
 
@@ -50,8 +150,6 @@ public class Simulation {
      * Creates a new simulation with the default settings and nothing in it.
      */
     public Simulation() {
-        bodiesArrayList = new ArrayList<Body>();
-        bodies = Collections.synchronizedList(bodiesArrayList);
         springsArrayList = new ArrayList<Spring>();
         springs = Collections.synchronizedList(springsArrayList);
 
@@ -88,18 +186,52 @@ public class Simulation {
      * @return the number of bodies
      */
     public int numBodies() {
-        return bodies.size();
+        synchronized (bodies) {
+            return bodies.size();
+        }
     }
 
     /**
-     * Get the body at a certain index.
+     * Get the body at a certain index. Removing a body moves the last body
+     * into its place, so a body's index can change; its handle does not.
      * 
      * @param i
      *            the index
      * @return the body at that index
      */
     public Body getBody(int i) {
-        return bodies.get(i);
+        synchronized (bodies) {
+            return bodies.get(i);
+        }
+    }
+
+    /**
+     * Get the body with a handle, as returned by <code>addBody</code>. This
+     * takes constant time.
+     * 
+     * @param handle
+     *            the handle
+     * @return the body, or null if it has been removed
+     */
+    public Body getBodyByHandle(int handle) {
+        synchronized (bodies) {
+            return bodies.lookup(handle);
+        }
+    }
+
+    /**
+     * Get a body's handle. The handle stays the same for as long as the body
+     * is in the simulation, and is never given to another body while it may
+     * still be in use.
+     * 
+     * @param body
+     *            the body
+     * @return the handle, or -1 if the body is not in the simulation
+     */
+    public int getHandle(Body body) {
+        synchronized (bodies) {
+            return bodies.handleOf(body);
+        }
     }
 
     /**
@@ -142,6 +274,46 @@ public class Simulation {
         return springs.toArray(new Spring[0]);
     }
 
+    /**
+     * Get the number of joints in the system.
+     * 
+     * @return the number of joints
+     */
+    public int numJoints() {
+        return joints.size();
+    }
+
+    /**
+     * Get the joint at a certain index
+     * 
+     * @param i
+     *            the index
+     * @return the joint
+     */
+    public Joint getJoint(int i) {
+        return joints.get(i);
+    }
+
+    /**
+     * Get the joints as an array.
+     * 
+     * @return the joints
+     */
+    public Joint[] getJoints() {
+        return joints.toArray(new Joint[0]);
+    }
+
+    /**
+     * Get the particle system. Particles are circles that only collide with
+     * each other and are stored much more compactly than bodies; a
+     * simulation made of nothing but circles should use particles instead.
+     * 
+     * @return the particles
+     */
+    public ParticleSystem getParticles() {
+        return particles;
+    }
+
     /**
      * Step the system for a certain amount of time.
      * 
@@ -149,32 +321,77 @@ public class Simulation {
      *            the number of time units to step the system
      */
     protected void step(double amount) {
-        // collide every body with every other body
-        // but don't do reverse collisions
-        // e.g. don't do both b.collide(a) and a.collide(b)
-        synchronized (bodies) {
-            for (int i = 0; i < bodies.size(); ++i) {
-                Body b1 = bodies.get(i);
-                for (int j = i + 1; j < bodies.size(); ++j) {
-                    Body b2 = bodies.get(j);
-                    b1.collide(b2);
+        step(amount, 0, 1, false);
+    }
+
+    /**
+     * Step the system for one substep of a call to
+     * <code>step(amount, times)</code>. With multi-rate stepping, a body that
+     * is not due this substep falls behind, and is stepped for all the time it
+     * missed when it is due.
+     */
+    private void step(double amount, int substep, int substeps,
+            boolean multiRate) {
+        if (positionBased) {
+            stepPositions(amount);
+        } else {
+            synchronized (bodies) {
+                // fixed bodies are kept apart, so they are never collided with
+                // each other and never stepped
+                if (bodiesChanged || !broadPhase.isCurrent()) {
+                    broadPhase.rebuild(bodies);
+                    bodiesChanged = false;
+                }
+                if (multiRate) {
+                    for (int i = 0; i < broadPhase.dynamicCount(); ++i) {
+                        int k = broadPhase.dynamicIndex(i);
+                        stepLag[k] += amount;
+                        stepDue[k] = (substep + 1) % stepInterval[k] == 0
+                                || substep == substeps - 1;
+                    }
+                    broadPhase.collide(amount, stepDue, stepInterval);
+                } else {
+                    broadPhase.collide(amount, null, null);
                 }
-            }
-        }
 
-        synchronized (bodies) {
-            // step all bodies
-            for (Body b : bodies) {
-                b.step(amount);
-                // gravity
-                b.addImpulse(new Vector(0, 1 * amount * b.mass() * gravity));
+                // joints are solved after the contacts, before anything moves
+                solveJoints(amount);
+
+                // step all bodies that can move
+                for (int i = 0; i < broadPhase.dynamicCount(); ++i) {
+                    Body b = broadPhase.dynamicBody(i);
+                    double time = amount;
+                    if (multiRate) {
+                        int k = broadPhase.dynamicIndex(i);
+                        if (!stepDue[k]) {
+                            continue;
+                        }
+                        time = stepLag[k];
+                        stepLag[k] = 0;
+                    }
+                    b.step(time);
+                    // gravity
+                    b.addImpulse(0, 1 * time * b.mass() * gravity);
+                }
+                measureExtent();
             }
         }
 
-        synchronized (springs) {
-            // step all springs
-            for (Spring s : springs) {
-                s.step(amount);
+        // particles only collide with each other, so they are stepped apart
+        particles.step(amount, gravity);
+
+        // step all springs, unless they were projected with the bodies
+        if (!positionBased) {
+            synchronized (springs) {
+                if (implicitSprings) {
+                    springSolver.step(springs, amount);
+                } else {
+                    if (springsChanged) {
+                        springStore.rebuild(springs);
+                        springsChanged = false;
+                    }
+                    springStore.step(amount, parallelSprings);
+                }
             }
         }
 
@@ -202,14 +419,200 @@ public class Simulation {
      *            - the number of times to step.
      */
     public void step(double amount, int times) {
+        boolean multiRate = maxStepLevel > 0 && times > 1 && !positionBased;
+        if (multiRate) {
+            assignStepIntervals(amount / times, times);
+        }
         for (int i = 0; i < times; i++) {
-            step(amount / times);
+            step(amount / times, i, times, multiRate);
         }
 
+        // Tell the sensor listeners what entered and left the sensors, all at
+        // once now that the step is over:
+        fireSensorEvents();
+
         // Notify all the listeners that something has happened:
         fireStateChanged();
     }
 
+    /**
+     * Step the bodies, springs and joints for one substep with position-based
+     * dynamics. Every body is moved as if nothing were in its way; then
+     * contacts, springs and joints move the bodies to agree with them, and
+     * the bodies' velocities are taken from how far they moved.
+     */
+    private void stepPositions(double amount) {
+        synchronized (bodies) {
+            if (bodiesChanged || !broadPhase.isCurrent()) {
+                broadPhase.rebuild(bodies);
+                bodiesChanged = false;
+            }
+            if (previousX.length < bodies.size()) {
+                previousX = new double[bodies.size()];
+                previousY = new double[bodies.size()];
+                previousRotation = new double[bodies.size()];
+            }
+            for (int i = 0; i < broadPhase.dynamicCount(); ++i) {
+                Body b = broadPhase.dynamicBody(i);
+                CollisionShape shape = b.getShape();
+                int k = broadPhase.dynamicIndex(i);
+                previousX[k] = shape.centerX();
+                previousY[k] = shape.centerY();
+                previousRotation[k] = shape.rotation();
+                // gravity
+                b.addImpulse(0, 1 * amount * b.mass() * gravity);
+                b.step(amount);
+            }
+
+            positionSolver.begin(amount);
+            broadPhase.project(positionSolver);
+            synchronized (springs) {
+                positionSolver.projectSprings(springs);
+            }
+            synchronized (joints) {
+                for (Joint j : joints) {
+                    j.project(amount);
+                }
+            }
+
+            for (int i = 0; i < broadPhase.dynamicCount(); ++i) {
+                Body b = broadPhase.dynamicBody(i);
+                if (b.isKinematic()) {
+                    // nothing moved it but its own velocity
+                    continue;
+                }
+                CollisionShape shape = b.getShape();
+                int k = broadPhase.dynamicIndex(i);
+                b.setVelocity((shape.centerX() - previousX[k]) / amount,
+                        (shape.centerY() - previousY[k]) / amount);
+                b.setAngularVelocity((shape.rotation() - previousRotation[k])
+                        / amount);
+            }
+            positionSolver.solveVelocities(gravity);
+            measureExtent();
+        }
+    }
+
+    /**
+     * Work out the box around every body again, now that the bodies have
+     * moved. The fixed bodies' part is kept by the broad phase, which only
+     * measures them again when one of them moves. The caller must hold the
+     * lock on the bodies.
+     */
+    private void measureExtent() {
+        broadPhase.getStaticExtent(extent);
+        for (int i = 0; i < broadPhase.dynamicCount(); ++i) {
+            broadPhase.dynamicBody(i).getShape().getOutlineBounds(bounds);
+            BroadPhase.extend(extent, bounds);
+        }
+        extentStale = false;
+    }
+
+    /**
+     * Solve every joint a few times, so that joints that share a body settle
+     * on velocities that agree with all of them.
+     */
+    private void solveJoints(double amount) {
+        synchronized (joints) {
+            if (joints.isEmpty()) {
+                return;
+            }
+            for (Joint j : joints) {
+                j.prepare(amount);
+            }
+            for (int i = 0; i < jointIterations; ++i) {
+                for (Joint j : joints) {
+                    j.solve();
+                }
+            }
+        }
+    }
+
+    /**
+     * Put every body in a bin for multi-rate stepping. A body is stepped
+     * every 2^k substeps for the largest k, up to the maximum step level,
+     * for which it moves only a small part of its size in each of its own
+     * steps and its springs are stepped stably. The bins always line up at
+     * the end of <code>step(amount, times)</code>.
+     */
+    private void assignStepIntervals(double amount, int times) {
+        Body held = null;
+        synchronized (grabLock) {
+            if (grabbed != null) {
+                held = grabbed.connectedBody();
+            }
+        }
+        synchronized (bodies) {
+            for (int i = 0; i < bodies.size(); ++i) {
+                stepStiffness[i] = 0;
+            }
+            synchronized (springs) {
+                for (Spring s : springs) {
+                    addStiffness(s.connectedBody1(), s.strength());
+                    addStiffness(s.connectedBody2(), s.strength());
+                }
+            }
+            for (int i = 0; i < bodies.size(); ++i) {
+                Body b = bodies.get(i);
+                stepLag[i] = 0;
+                stepInterval[i] = 1;
+                // kinematic bodies are moved by whoever controls them, so
+                // they are always kept up to date
+                if (b.fixed() || b.isKinematic() || b == held) {
+                    continue;
+                }
+                b.getShape().getBounds(bounds);
+                double width = bounds[2] - bounds[0];
+                double height = bounds[3] - bounds[1];
+                double size = Math.min(width, height) / 2;
+                double reach = Math.sqrt(width * width + height * height) / 2;
+                double speed = b.velocity().magnitude()
+                        + Math.abs(b.angularVelocity()) * reach;
+                double springRate = Math.sqrt(stepStiffness[i] / b.mass());
+                for (int level = 0; level < maxStepLevel; ++level) {
+                    int interval = 2 * stepInterval[i];
+                    double time = interval * amount;
+                    // gravity speeds the body up during its step
+                    double travel = (speed + Math.abs(gravity) * time) * time;
+                    if (interval > times || travel > MAX_BIN_TRAVEL * size
+                            || springRate * time > MAX_BIN_SPRING_PHASE) {
+                        break;
+                    }
+                    stepInterval[i] = interval;
+                }
+            }
+            // joints need both of their bodies to be where they are now
+            synchronized (joints) {
+                for (Joint j : joints) {
+                    stepEveryTime(j.connectedBody1());
+                    stepEveryTime(j.connectedBody2());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add to the strength of the springs on a body, if it is in the
+     * simulation. The caller must hold the lock on the bodies.
+     */
+    private void addStiffness(Body body, double strength) {
+        int i = bodies.indexOf(body);
+        if (i >= 0) {
+            stepStiffness[i] += strength;
+        }
+    }
+
+    /**
+     * Have a body stepped every substep, if it is in the simulation. The
+     * caller must hold the lock on the bodies.
+     */
+    private void stepEveryTime(Body body) {
+        int i = bodies.indexOf(body);
+        if (i >= 0) {
+            stepInterval[i] = 1;
+        }
+    }
+
     /**
      * Get a body at a certain point, or null if no body is there.
      * 
@@ -231,32 +634,102 @@ public class Simulation {
     }
 
     /**
-     * Adds a body to the simulation.
+     * Adds a body to the simulation. A body that is already in it is not added
+     * again. This takes constant time.
      * 
      * @param body
      *            - the body to add.
+     * @return the body's handle, or -1 if it has no mass and was not added.
      */
-    public void addBody(Body body) {
-        if (body.getMass() > 0) {
-            bodies.add(body);
+    public int addBody(Body body) {
+        if (body.getMass() <= 0) {
+            return -1;
+        }
+        int handle;
+        synchronized (bodies) {
+            if (bodies.contains(body)) {
+                return bodies.handleOf(body);
+            }
+            handle = bodies.insert(body);
+            bodiesChanged = true;
+            // the new body is at the end, and starts out stepped every substep
+            int i = bodies.size() - 1;
+            if (i == stepInterval.length) {
+                stepInterval = Arrays.copyOf(stepInterval, 2 * i);
+                stepDue = Arrays.copyOf(stepDue, 2 * i);
+                stepLag = Arrays.copyOf(stepLag, 2 * i);
+                stepStiffness = Arrays.copyOf(stepStiffness, 2 * i);
+            }
+            stepInterval[i] = 1;
+            stepDue[i] = false;
+            stepLag[i] = 0;
+            if (!bodyChangeListeners.isEmpty()) {
+                body.addChangeListener(bodyChangeForwarder);
+            }
+            if (!extentStale) {
+                body.getShape().getOutlineBounds(bounds);
+                BroadPhase.extend(extent, bounds);
+            }
+            if (batchDepth > 0) {
+                // a body taken out and put back in the batch never left
+                if (!batchRemoved.remove(body)) {
+                    batchAdded.add(body);
+                }
+                return handle;
+            }
+        }
 
-            // Notify the listeners; something has changed:
-            fireStateChanged();
+        // Notify the listeners; something has changed:
+        fireStateChanged();
 
-            // Notify the BodySetListeners; the set of bodies has been added to:
-            fireBodyAdded(body);
-        }
+        // Notify the BodySetListeners; the set of bodies has been added to:
+        fireBodyAdded(body);
+
+        return handle;
     }
 
     /**
-     * Removes the specified body. If more than one instance of the specified
-     * body exists in the simulation, it only removes the first one.
+     * Removes the specified body, if it is in the simulation. This takes
+     * constant time; the last body takes the removed one's index. The body
+     * leaves any sensors it overlapped without a <code>bodyExited</code>
+     * event, as the bodies removed by <code>reset</code> do.
      * 
      * @param body
      *            - the body to remove.
      */
     public void removeBody(Body body) {
-        bodies.remove(body);
+        synchronized (bodies) {
+            int i = bodies.indexOf(body);
+            if (!bodies.delete(body)) {
+                return;
+            }
+            bodiesChanged = true;
+            // the last body has taken the removed one's index
+            int last = bodies.size();
+            if (i < last) {
+                stepInterval[i] = stepInterval[last];
+                stepDue[i] = stepDue[last];
+                stepLag[i] = stepLag[last];
+            }
+            if (!bodyChangeListeners.isEmpty()) {
+                body.removeChangeListener(bodyChangeForwarder);
+            }
+            // like the bodies taken out by reset, the body leaves no sensor
+            broadPhase.sensorOverlaps().remove(body);
+            if (!extentStale) {
+                // only a body on the edge of the box can make it shrink
+                body.getShape().getOutlineBounds(bounds);
+                extentStale = bounds[0] <= extent[0] || bounds[1] <= extent[1]
+                        || bounds[2] >= extent[2] || bounds[3] >= extent[3];
+            }
+            if (batchDepth > 0) {
+                // a body put in and taken out in the batch was never there
+                if (!batchAdded.remove(body)) {
+                    batchRemoved.add(body);
+                }
+                return;
+            }
+        }
 
         // Notify the PhysicsListeners; something has changed:
         fireStateChanged();
@@ -265,6 +738,144 @@ public class Simulation {
         fireBodyRemoved(body);
     }
 
+    /**
+     * Adds several bodies to the simulation, firing one event for all of them
+     * instead of one for each. Bodies without mass and bodies that are already
+     * in the simulation are skipped.
+     * 
+     * @param added
+     *            - the bodies to add.
+     */
+    public void addBodies(Collection<? extends Body> added) {
+        beginBatch();
+        try {
+            synchronized (bodies) {
+                for (Body body : added) {
+                    addBody(body);
+                }
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Removes several bodies from the simulation, firing one event for all of
+     * them instead of one for each. Bodies that are not in the simulation are
+     * skipped.
+     * 
+     * @param removed
+     *            - the bodies to remove.
+     */
+    public void removeBodies(Collection<? extends Body> removed) {
+        beginBatch();
+        try {
+            synchronized (bodies) {
+                for (Body body : removed) {
+                    removeBody(body);
+                }
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Starts a batch of changes to the set of bodies. Until the batch ends,
+     * adding and removing bodies fires no events; when it ends, one
+     * <code>BodySetEvent</code> is fired for all the bodies removed and one
+     * for all the bodies added, along with a single state change. A body that
+     * is added and then removed in the same batch, or the other way around,
+     * is not in either event. Batches may be nested, and only the outermost
+     * one fires events. Every call must be matched by a call to
+     * <code>endBatch</code>, best in a <code>finally</code> block.
+     */
+    public void beginBatch() {
+        synchronized (bodies) {
+            ++batchDepth;
+        }
+    }
+
+    /**
+     * Ends a batch of changes started with <code>beginBatch</code>, firing
+     * the events for them if this is the outermost batch.
+     * 
+     * @throws IllegalStateException
+     *             if no batch has been started
+     */
+    public void endBatch() {
+        Body[] added, removed;
+        synchronized (bodies) {
+            if (batchDepth == 0) {
+                throw new IllegalStateException("No batch has been started.");
+            }
+            if (--batchDepth > 0) {
+                return;
+            }
+            added = batchAdded.toArray(new Body[batchAdded.size()]);
+            removed = batchRemoved.toArray(new Body[batchRemoved.size()]);
+            batchAdded.clear();
+            batchRemoved.clear();
+        }
+        if (added.length == 0 && removed.length == 0) {
+            return;
+        }
+
+        // Notify the listeners; something has changed:
+        fireStateChanged();
+
+        // Notify the BodySetListeners of everything at once:
+        if (removed.length > 0) {
+            fireBodiesRemoved(removed);
+        }
+        if (added.length > 0) {
+            fireBodiesAdded(added);
+        }
+    }
+
+    /**
+     * Removes the body with a handle, if it is still in the simulation. This
+     * takes constant time.
+     * 
+     * @param handle
+     *            - the handle of the body to remove.
+     * @return whether the body was removed.
+     */
+    public boolean removeBody(int handle) {
+        Body body = getBodyByHandle(handle);
+        if (body == null) {
+            return false;
+        }
+        removeBody(body);
+        return true;
+    }
+
+    /**
+     * Add a joint to the system.
+     * 
+     * @param j
+     *            the joint to add
+     */
+    public void addJoint(Joint j) {
+        joints.add(j);
+
+        // Notify the listeners; something has changed:
+        fireStateChanged();
+    }
+
+    /**
+     * Remove a joint from the system.
+     * 
+     * @param j
+     *            the joint to remove
+     */
+    public void removeJoint(Joint j) {
+        joints.remove(j);
+
+        // Notify the listeners; something has changed:
+        fireStateChanged();
+    }
+
     /**
      * Add a spring to the system.
      * 
@@ -272,7 +883,10 @@ public class Simulation {
      *            the spring to add
      */
     public void addSpring(Spring s) {
-        springs.add(s);
+        synchronized (springs) {
+            springs.add(s);
+            springsChanged = true;
+        }
 
         // Notify the listeners; something has changed:
         fireStateChanged();
@@ -372,7 +986,19 @@ public class Simulation {
      *            - the body specified to the <code>BodySetEvent</code>.
      */
     protected synchronized void fireBodyAdded(Body body) {
-        BodySetEvent e = new BodySetEvent(this, body);
+        fireBodiesAdded(new Body[] { body });
+    }
+
+    /**
+     * Invokes the <code>bodyAdded</code> method of every registered listener
+     * once, with all the specified bodies in the event along with
+     * <code>this</code> specified as the source.
+     * 
+     * @param added
+     *            - the bodies specified to the <code>BodySetEvent</code>.
+     */
+    protected synchronized void fireBodiesAdded(Body[] added) {
+        BodySetEvent e = new BodySetEvent(this, added);
 
         for (BodySetListener listener : bodySetListeners) {
             listener.bodyAdded(e);
@@ -388,13 +1014,146 @@ public class Simulation {
      *            - the body specified to the <code>BodySetEvent</code>.
      */
     protected synchronized void fireBodyRemoved(Body body) {
-        BodySetEvent e = new BodySetEvent(this, body);
+        fireBodiesRemoved(new Body[] { body });
+    }
+
+    /**
+     * Invokes the <code>bodyRemoved</code> method of every registered listener
+     * once, with all the specified bodies in the event along with
+     * <code>this</code> specified as the source.
+     * 
+     * @param removed
+     *            - the bodies specified to the <code>BodySetEvent</code>.
+     */
+    protected synchronized void fireBodiesRemoved(Body[] removed) {
+        BodySetEvent e = new BodySetEvent(this, removed);
 
         for (BodySetListener listener : bodySetListeners) {
             listener.bodyRemoved(e);
         }
     }
 
+    /**
+     * Registers a <code>ChangeListener</code> that is notified whenever one of
+     * the properties of any body in this simulation changes, with the body as
+     * the event's source. This lets one observer watch every body without
+     * adding a listener to each of them.
+     * 
+     * @param listener
+     *            - the listener to register.
+     */
+    public void addBodyChangeListener(ChangeListener listener) {
+        synchronized (bodies) {
+            if (bodyChangeListeners.isEmpty()) {
+                for (Body body : bodies) {
+                    body.addChangeListener(bodyChangeForwarder);
+                }
+            }
+            bodyChangeListeners.add(listener);
+        }
+    }
+
+    /**
+     * Returns an array of all the <code>ChangeListener</code>s currently
+     * watching the bodies of this <code>Simulation</code>.
+     * 
+     * @return an array of all the <code>ChangeListener</code>s currently
+     *         watching the bodies of this <code>Simulation</code>.
+     */
+    public ChangeListener[] getBodyChangeListeners() {
+        return bodyChangeListeners.toArray(new ChangeListener[0]);
+    }
+
+    /**
+     * Removes the specified body change listener. If the listener is not
+     * registered to this <code>Simulation</code>, nothing happens. If the
+     * listener is registered twice, it is only removed once and will still
+     * continue to be notified at least once.
+     * 
+     * @param listener
+     *            - the listener to remove.
+     */
+    public void removeBodyChangeListener(ChangeListener listener) {
+        synchronized (bodies) {
+            if (bodyChangeListeners.remove(listener)
+                    && bodyChangeListeners.isEmpty()) {
+                for (Body body : bodies) {
+                    body.removeChangeListener(bodyChangeForwarder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a new <code>SensorListener</code> for this simulation. This
+     * listener will be notified when a <code>Body</code> starts or stops
+     * overlapping a sensor. While no guarantee of order strictly exists, the
+     * current implementation does maintain a set order of listeners.
+     * 
+     * @param listener
+     *            - the listener to register.
+     */
+    public synchronized void addSensorListener(SensorListener listener) {
+        sensorListeners.add(listener);
+    }
+
+    /**
+     * Returns an array of all the <code>SensorListener</code>s currently
+     * registered to this <code>Simulation</code>.
+     * 
+     * @return an array of all the <code>SensorListener</code>s currently
+     *         registered to this <code>Simulation</code>.
+     */
+    public synchronized SensorListener[] getSensorListeners() {
+        return sensorListeners.toArray(new SensorListener[sensorListeners
+                .size()]);
+    }
+
+    /**
+     * Removes the specified listener. If the listener is not registered to this
+     * <code>Simulation</code>, nothing happens. If the listeners is registered
+     * twice, it is only removed once and will still continue to be notified at
+     * least once.
+     * 
+     * @param listener
+     *            - the listener to remove.
+     */
+    public synchronized void removeSensorListener(SensorListener listener) {
+        sensorListeners.remove(listener);
+    }
+
+    /**
+     * Finishes the sensor overlaps of the step that just ended and invokes the
+     * <code>bodyExited</code> and then the <code>bodyEntered</code> method of
+     * every registered listener for each pair that changed, with
+     * <code>this</code> specified as the source.
+     */
+    protected void fireSensorEvents() {
+        // the bodies are locked before the listeners everywhere else too
+        synchronized (bodies) {
+            broadPhase.sensorOverlaps().finish(sensorsEntered, sensorsExited);
+        }
+        synchronized (this) {
+            try {
+                for (Body[] pair : sensorsExited) {
+                    SensorEvent e = new SensorEvent(this, pair[0], pair[1]);
+                    for (SensorListener listener : sensorListeners) {
+                        listener.bodyExited(e);
+                    }
+                }
+                for (Body[] pair : sensorsEntered) {
+                    SensorEvent e = new SensorEvent(this, pair[0], pair[1]);
+                    for (SensorListener listener : sensorListeners) {
+                        listener.bodyEntered(e);
+                    }
+                }
+            } finally {
+                sensorsEntered.clear();
+                sensorsExited.clear();
+            }
+        }
+    }
+
     /**
      * Sets whether this simulation is "playing." Playing generally means that
      * the simulation is being stepped repeatedly to animate it; when it is
@@ -436,6 +1195,47 @@ public class Simulation {
         this.gravity = gravity;
     }
 
+    /**
+     * Set whether bodies of two types collide with each other. By default
+     * bodies of every type collide; once a pair of types is turned off, those
+     * bodies pass through each other. This is checked along with the bodies'
+     * own categories and masks.
+     * 
+     * @param type1
+     *            - the first type, as returned by <code>Body.getType()</code>
+     * @param type2
+     *            - the second type
+     * @param collide
+     *            - whether they should collide
+     */
+    public void setInteraction(int type1, int type2, boolean collide) {
+        synchronized (bodies) {
+            broadPhase.setInteraction(type1, type2, collide);
+        }
+    }
+
+    /**
+     * Tells whether bodies of two types collide with each other.
+     * 
+     * @param type1
+     *            - the first type
+     * @param type2
+     *            - the second type
+     * @return whether they collide
+     */
+    public boolean getInteraction(int type1, int type2) {
+        return broadPhase.interacts(type1, type2);
+    }
+
+    /**
+     * Let bodies of every type collide with each other again.
+     */
+    public void clearInteractions() {
+        synchronized (bodies) {
+            broadPhase.clearInteractions();
+        }
+    }
+
     /**
      * Returns the current strength of the gravity.This value dictates how hard
      * the gravity pulls on various objects; a value of 0 means no gravity and a
@@ -447,26 +1247,170 @@ public class Simulation {
         return gravity;
     }
 
+    /**
+     * Set how much less often slow bodies may be stepped than fast ones. Each
+     * call to <code>step(amount, times)</code> puts every body in a bin
+     * according to its speed and the strength of its springs, and a body in
+     * bin k is only stepped and collided every 2^k substeps. When two bodies
+     * touch, the slower one is brought up to date, and both are stepped as
+     * often as the faster of them for the rest of the call. The default, 0,
+     * steps every body every substep.
+     * 
+     * @param maxStepLevel
+     *            the highest bin, which must not be negative
+     */
+    public void setMaxStepLevel(int maxStepLevel) {
+        if (maxStepLevel < 0) {
+            throw new IllegalArgumentException(
+                    "The step level must not be negative.");
+        }
+        this.maxStepLevel = maxStepLevel;
+    }
+
+    /**
+     * Set whether springs are stepped implicitly. Normally each spring pulls
+     * on its bodies by itself, which is fast but needs very small steps once
+     * the springs are stiff. Implicit springs are stepped all at once with
+     * backward Euler, which stays stable for any strength at the cost of
+     * solving a linear system every step and of damping the springs' motion
+     * a little.
+     * 
+     * @param implicitSprings
+     *            whether to step springs implicitly
+     */
+    public void setImplicitSprings(boolean implicitSprings) {
+        this.implicitSprings = implicitSprings;
+    }
+
+    /**
+     * Tells whether springs are stepped implicitly.
+     * 
+     * @return whether springs are stepped implicitly
+     */
+    public boolean isImplicitSprings() {
+        return implicitSprings;
+    }
+
+    /**
+     * Set whether the springs' forces are found on several threads. This
+     * only pays off with thousands of springs, and only affects springs that
+     * are not stepped implicitly.
+     * 
+     * @param parallelSprings
+     *            whether to step springs in parallel
+     */
+    public void setParallelSprings(boolean parallelSprings) {
+        this.parallelSprings = parallelSprings;
+    }
+
+    /**
+     * Tells whether the springs' forces are found on several threads.
+     * 
+     * @return whether springs are stepped in parallel
+     */
+    public boolean isParallelSprings() {
+        return parallelSprings;
+    }
+
+    /**
+     * Set whether the simulation steps by positions instead of with impulses.
+     * Position-based dynamics (XPBD) moves every body as if nothing were in
+     * its way and then moves it back to agree with its contacts, springs and
+     * joints, which stays stable with much larger steps than impulses do, so
+     * far fewer steps are needed for stacks and stiff springs. Contacts and
+     * joints are rigid, and a spring gives by the inverse of its strength.
+     * Multi-rate stepping and implicit springs only apply to impulse steps.
+     * 
+     * @param positionBased
+     *            whether to step by positions
+     */
+    public void setPositionBased(boolean positionBased) {
+        this.positionBased = positionBased;
+    }
+
+    /**
+     * Tells whether the simulation steps by positions instead of with
+     * impulses.
+     * 
+     * @return whether the simulation steps by positions
+     */
+    public boolean isPositionBased() {
+        return positionBased;
+    }
+
+    /**
+     * Set how many times the joints are solved each step. Each time brings
+     * joints that share bodies closer to agreeing; long chains need more.
+     * 
+     * @param jointIterations
+     *            the number of times, which must be positive
+     */
+    public void setJointIterations(int jointIterations) {
+        if (jointIterations < 1) {
+            throw new IllegalArgumentException(
+                    "The joints must be solved at least once.");
+        }
+        this.jointIterations = jointIterations;
+    }
+
+    /**
+     * Get how many times the joints are solved each step.
+     * 
+     * @return the number of times
+     */
+    public int getJointIterations() {
+        return jointIterations;
+    }
+
+    /**
+     * Get how much less often slow bodies may be stepped than fast ones.
+     * 
+     * @return the highest bin a body may be put in; 0 if multi-rate stepping
+     *         is off
+     */
+    public int getMaxStepLevel() {
+        return maxStepLevel;
+    }
+
     /**
      * Resets the simulation, getting rid of all the bodies and springs. This
-     * method fires stateChanged after clearing the two lists.
+     * method fires one bodyRemoved for all the bodies, and stateChanged after
+     * clearing the two lists.
      */
     public void reset() {
 
         // Clear bodies and call all the events properly:
-        int max = bodies.size();
         synchronized (bodies) {
-            for (int i = 0; i < max; i++) {
-                fireBodyRemoved(bodies.remove(0));
+            Body[] removed = bodies.toArray(new Body[bodies.size()]);
+            bodies.clear();
+            bodiesChanged = true;
+            if (!bodyChangeListeners.isEmpty()) {
+                for (Body body : removed) {
+                    body.removeChangeListener(bodyChangeForwarder);
+                }
+            }
+            BroadPhase.clearExtent(extent);
+            extentStale = false;
+            // the removed bodies neither entered nor left anything
+            broadPhase.sensorOverlaps().clear();
+            if (batchDepth > 0) {
+                for (Body body : removed) {
+                    if (!batchAdded.remove(body)) {
+                        batchRemoved.add(body);
+                    }
+                }
+            } else if (removed.length > 0) {
+                fireBodiesRemoved(removed);
             }
         }
         springs.clear();
+        joints.clear();
+        particles.clear();
 
         // Makes sure everything is restarted pretty completely:
-        bodiesArrayList = new ArrayList<Body>();
-        bodies = Collections.synchronizedList(bodiesArrayList);
         springsArrayList = new ArrayList<Spring>();
         springs = Collections.synchronizedList(springsArrayList);
+        springsChanged = true;
 
         fireStateChanged();
     }
@@ -493,77 +1437,57 @@ public class Simulation {
     }
 
     /**
-     * Returns how far the camera must move to get the left-most shape.
+     * Returns how far the camera must move to get the left-most shape. This
+     * takes constant time, unless a body on the edge of the simulation has
+     * been removed since the last step.
      * 
      * @return the x-offset.
      */
     public int getXMin() {
         synchronized (bodies) {
-            int min = 0;
-
-            for (Body body : bodies) {
-                Rectangle bounds = body.getShape().toShape().getBounds();
-
-                if (bounds.x < min) {
-                    min = bounds.x;
-                }
-            }
-
-            return min;
+            return (int) Math.min(0, Math.floor(getExtent()[0]));
         }
     }
 
     /**
-     * Returns how far the camera must move to get the lowest shape.
+     * Returns how far the camera must move to get the lowest shape. This
+     * takes constant time, unless a body on the edge of the simulation has
+     * been removed since the last step.
      * 
      * @return - the y-offset.
      */
     public int getYMin() {
         synchronized (bodies) {
-            int min = 0;
-
-            for (Body body : bodies) {
-                Rectangle bounds = body.getShape().toShape().getBounds();
-
-                if (bounds.y < min) {
-                    min = bounds.y;
-                }
-            }
-
-            return min;
+            return (int) Math.min(0, Math.floor(getExtent()[1]));
         }
     }
 
     public int getXMax() {
         synchronized (bodies) {
-            int max = 0;
-
-            for (Body body : bodies) {
-                Rectangle bounds = body.getShape().toShape().getBounds();
-
-                if ((bounds.x + bounds.width) > max) {
-                    max = bounds.x + bounds.width;
-                }
-            }
-
-            return max;
+            return (int) Math.max(0, Math.ceil(getExtent()[2]));
         }
     }
 
     public int getYMax() {
         synchronized (bodies) {
-            int max = 0;
+            return (int) Math.max(0, Math.ceil(getExtent()[3]));
+        }
+    }
 
+    /**
+     * Get the box around every body, working it out again if a body on its
+     * edge was removed. The caller must hold the lock on the bodies.
+     */
+    private double[] getExtent() {
+        if (extentStale) {
+            BroadPhase.clearExtent(extent);
             for (Body body : bodies) {
-                Rectangle bounds = body.getShape().toShape().getBounds();
-
-                if ((bounds.y + bounds.height) > max) {
-                    max = bounds.y + bounds.height;
-                }
+                body.getShape().getOutlineBounds(bounds);
+                BroadPhase.extend(extent, bounds);
             }
-
-            return max;
+            extentStale = false;
         }
+        return extent;
     }
 
     public String toArchiveString() {
@@ -608,7 +1532,9 @@ public class Simulation {
      * @return whether the specified body exists.
      */
     public boolean containsBody(Body body) {
-        return bodies.contains(body);
+        synchronized (bodies) {
+            return bodies.contains(body);
+        }
     }
 
     /**
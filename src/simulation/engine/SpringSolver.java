@@ -0,0 +1,338 @@
+package simulation.engine;
+
+import java.util.List;
+
+/**
+ * Steps springs implicitly, so that stiff springs stay stable at ordinary
+ * step sizes. Applying each spring's impulse on its own, as
+ * <code>Spring.step</code> does, overshoots once a spring is stiff compared
+ * to the step, and a network of such springs blows up. Instead this takes a
+ * linearized backward Euler step of every spring at once: it finds the change
+ * in the bodies' velocities that agrees with the spring forces at the end of
+ * the step, which means solving
+ *
+ * <pre>
+ * (M + h&sup2;K) dv = h(f - hKv)
+ * </pre>
+ *
+ * where M holds the bodies' masses and moments of inertia, K is the
+ * stiffness of the spring graph, f the springs' forces, v the bodies'
+ * velocities and h the step. The system is symmetric and positive definite,
+ * so it is solved with the conjugate gradient method, which only needs K
+ * applied one spring at a time and never builds the matrix.
+ * <p>
+ * Each body has three unknowns: its velocity and its angular velocity. Fixed
+ * and kinematic bodies are left out, so springs attached to them pull only
+ * on the other end.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class SpringSolver {
+	// conjugate gradient stops after this many iterations, or once the
+	// residual has shrunk by this factor
+	private static final int MAX_ITERATIONS = 60;
+	private static final double TOLERANCE = 1e-6;
+
+	// the bodies being solved for; a body's unknowns start at 3 times its
+	// index
+	private Body[] bodies = new Body[0];
+	private int bodyCount;
+	private final BodyIndexMap indices = new BodyIndexMap();
+	// the masses and moments of inertia
+	private double[] mass = new double[0];
+	// the right hand side, the solution, and conjugate gradient's vectors
+	private double[] rhs = new double[0], dv = new double[0];
+	private double[] residual = new double[0], direction = new double[0];
+	private double[] product = new double[0], preconditioned = new double[0];
+	// the inverse of the diagonal of the system
+	private double[] inverseDiagonal = new double[0];
+
+	// for each spring, the indices of its bodies, or -1 for a fixed body
+	private int[] body1 = new int[0], body2 = new int[0];
+	// for each spring, where it is attached relative to the bodies' centers,
+	// two entries per end
+	private double[] arm1 = new double[0], arm2 = new double[0];
+	// for each spring, its stiffness matrix: xx, xy and yy entries
+	private double[] stiffness = new double[0];
+	private int springCount;
+
+	/**
+	 * Apply the springs' impulses for a certain amount of time.
+	 *
+	 * @param springs
+	 *            the springs, which the caller must keep from changing
+	 * @param amount
+	 *            the number of time units that have passed
+	 */
+	void step(List<Spring> springs, double amount) {
+		if (springs.isEmpty()) {
+			return;
+		}
+		index(springs);
+		if (bodyCount == 0) {
+			return;
+		}
+		linearize(springs, amount);
+		solve(amount);
+		for (int b = 0; b < bodyCount; ++b) {
+			Body body = bodies[b];
+			body.addImpulse(mass[3 * b] * dv[3 * b], mass[3 * b + 1]
+					* dv[3 * b + 1]);
+			body.setAngularVelocity(body.angularVelocity() + dv[3 * b + 2]);
+		}
+	}
+
+	/**
+	 * Number the bodies that are attached to springs and can move.
+	 */
+	private void index(List<Spring> springs) {
+		int size = springs.size();
+		if (body1.length < size) {
+			body1 = new int[size];
+			body2 = new int[size];
+			arm1 = new double[2 * size];
+			arm2 = new double[2 * size];
+			stiffness = new double[3 * size];
+		}
+		springCount = size;
+		indices.clear();
+		bodyCount = 0;
+		int i = 0;
+		for (Spring s : springs) {
+			body1[i] = number(s.connectedBody1(), 2 * size);
+			body2[i] = number(s.connectedBody2(), 2 * size);
+			++i;
+		}
+		// don't hold on to bodies from earlier steps
+		for (int b = bodyCount; b < bodies.length; ++b) {
+			bodies[b] = null;
+		}
+	}
+
+	/**
+	 * Give a body an index if it doesn't have one yet.
+	 */
+	private int number(Body body, int maxBodies) {
+		if (body.fixed() || body.isKinematic()) {
+			return -1;
+		}
+		int index = indices.get(body);
+		if (index < 0) {
+			if (bodies.length < maxBodies) {
+				grow(maxBodies);
+			}
+			index = bodyCount;
+			indices.put(body, index);
+			bodies[bodyCount] = body;
+			mass[3 * bodyCount] = body.mass();
+			mass[3 * bodyCount + 1] = body.mass();
+			mass[3 * bodyCount + 2] = body.momentOfInertia();
+			++bodyCount;
+		}
+		return index;
+	}
+
+	private void grow(int maxBodies) {
+		Body[] grown = new Body[maxBodies];
+		System.arraycopy(bodies, 0, grown, 0, bodyCount);
+		bodies = grown;
+		double[] grownMass = new double[3 * maxBodies];
+		System.arraycopy(mass, 0, grownMass, 0, 3 * bodyCount);
+		mass = grownMass;
+		rhs = new double[3 * maxBodies];
+		dv = new double[3 * maxBodies];
+		residual = new double[3 * maxBodies];
+		direction = new double[3 * maxBodies];
+		product = new double[3 * maxBodies];
+		preconditioned = new double[3 * maxBodies];
+		inverseDiagonal = new double[3 * maxBodies];
+	}
+
+	/**
+	 * Compute each spring's force and stiffness where the bodies are now, and
+	 * from them the right hand side and the diagonal of the system.
+	 */
+	private void linearize(List<Spring> springs, double h) {
+		int n = 3 * bodyCount;
+		for (int k = 0; k < n; ++k) {
+			rhs[k] = 0;
+			inverseDiagonal[k] = mass[k];
+		}
+		int i = 0;
+		for (Spring s : springs) {
+			Vector p1 = s.vertex1(), p2 = s.vertex2();
+			CollisionShape shape1 = s.connectedBody1().getShape();
+			CollisionShape shape2 = s.connectedBody2().getShape();
+			double r1x = p1.getX() - shape1.centerX();
+			double r1y = p1.getY() - shape1.centerY();
+			double r2x = p2.getX() - shape2.centerX();
+			double r2y = p2.getY() - shape2.centerY();
+			arm1[2 * i] = r1x;
+			arm1[2 * i + 1] = r1y;
+			arm2[2 * i] = r2x;
+			arm2[2 * i + 1] = r2y;
+
+			double dx = p2.getX() - p1.getX(), dy = p2.getY() - p1.getY();
+			double length = Math.sqrt(dx * dx + dy * dy);
+			double nx = 1, ny = 0;
+			if (length > 0) {
+				nx = dx / length;
+				ny = dy / length;
+			}
+			double k = s.strength();
+			// Along the spring the stiffness is k. Across it, turning the
+			// spring changes the force by k(1 - natural length / length);
+			// a compressed spring would make that negative, so it is left
+			// out, which keeps the system positive definite.
+			double across = length > 0 ? Math.max(0, 1 - s.naturalLength()
+					/ length) : 0;
+			double kxx = k * (nx * nx + across * (1 - nx * nx));
+			double kxy = k * (nx * ny - across * nx * ny);
+			double kyy = k * (ny * ny + across * (1 - ny * ny));
+			stiffness[3 * i] = kxx;
+			stiffness[3 * i + 1] = kxy;
+			stiffness[3 * i + 2] = kyy;
+
+			// the force on the first body, pulling it towards the second
+			double pull = k * (length - s.naturalLength());
+			double fx = pull * nx, fy = pull * ny;
+			// how fast the first end moves away from the second
+			double ux = 0, uy = 0;
+			int b1 = body1[i], b2 = body2[i];
+			if (b1 >= 0) {
+				Body body = bodies[b1];
+				ux += body.velocityAtX(p1.getY());
+				uy += body.velocityAtY(p1.getX());
+			}
+			if (b2 >= 0) {
+				Body body = bodies[b2];
+				ux -= body.velocityAtX(p2.getY());
+				uy -= body.velocityAtY(p2.getX());
+			}
+			// the right hand side gets h(f - hKu)
+			double gx = h * (fx - h * (kxx * ux + kxy * uy));
+			double gy = h * (fy - h * (kxy * ux + kyy * uy));
+			double h2 = h * h;
+			if (b1 >= 0) {
+				addForce(b1, r1x, r1y, gx, gy, rhs);
+				addStiffnessDiagonal(b1, r1x, r1y, h2 * kxx, h2 * kxy, h2
+						* kyy);
+			}
+			if (b2 >= 0) {
+				addForce(b2, r2x, r2y, -gx, -gy, rhs);
+				addStiffnessDiagonal(b2, r2x, r2y, h2 * kxx, h2 * kxy, h2
+						* kyy);
+			}
+			++i;
+		}
+		for (int k = 0; k < n; ++k) {
+			inverseDiagonal[k] = 1 / inverseDiagonal[k];
+		}
+	}
+
+	/**
+	 * Add a force at a point on a body to the body's entries of a vector.
+	 */
+	private static void addForce(int b, double rx, double ry, double fx,
+			double fy, double[] to) {
+		to[3 * b] += fx;
+		to[3 * b + 1] += fy;
+		to[3 * b + 2] += rx * fy - ry * fx;
+	}
+
+	/**
+	 * Add the diagonal of a spring's stiffness, as seen by one of its bodies,
+	 * to the diagonal of the system.
+	 */
+	private void addStiffnessDiagonal(int b, double rx, double ry,
+			double kxx, double kxy, double kyy) {
+		inverseDiagonal[3 * b] += kxx;
+		inverseDiagonal[3 * b + 1] += kyy;
+		// turning moves the point along (-ry, rx)
+		inverseDiagonal[3 * b + 2] += ry * ry * kxx - 2 * rx * ry * kxy + rx
+				* rx * kyy;
+	}
+
+	/**
+	 * Solve for the change in velocity with preconditioned conjugate
+	 * gradient, starting from no change.
+	 */
+	private void solve(double h) {
+		int n = 3 * bodyCount;
+		double rz = 0, start = 0;
+		for (int k = 0; k < n; ++k) {
+			dv[k] = 0;
+			residual[k] = rhs[k];
+			preconditioned[k] = residual[k] * inverseDiagonal[k];
+			direction[k] = preconditioned[k];
+			rz += residual[k] * preconditioned[k];
+		}
+		start = rz;
+		if (start == 0) {
+			return;
+		}
+		for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+			multiply(direction, product, h);
+			double pAp = 0;
+			for (int k = 0; k < n; ++k) {
+				pAp += direction[k] * product[k];
+			}
+			if (pAp <= 0) {
+				break;
+			}
+			double alpha = rz / pAp;
+			double next = 0;
+			for (int k = 0; k < n; ++k) {
+				dv[k] += alpha * direction[k];
+				residual[k] -= alpha * product[k];
+				preconditioned[k] = residual[k] * inverseDiagonal[k];
+				next += residual[k] * preconditioned[k];
+			}
+			if (next <= TOLERANCE * TOLERANCE * start) {
+				break;
+			}
+			double beta = next / rz;
+			rz = next;
+			for (int k = 0; k < n; ++k) {
+				direction[k] = preconditioned[k] + beta * direction[k];
+			}
+		}
+	}
+
+	/**
+	 * Multiply a vector by the system's matrix, M + h&sup2;K.
+	 */
+	private void multiply(double[] x, double[] result, double h) {
+		int n = 3 * bodyCount;
+		for (int k = 0; k < n; ++k) {
+			result[k] = mass[k] * x[k];
+		}
+		double h2 = h * h;
+		for (int i = 0; i < springCount; ++i) {
+			int b1 = body1[i], b2 = body2[i];
+			double r1x = arm1[2 * i], r1y = arm1[2 * i + 1];
+			double r2x = arm2[2 * i], r2y = arm2[2 * i + 1];
+			// how fast the first end moves away from the second
+			double ux = 0, uy = 0;
+			if (b1 >= 0) {
+				ux += x[3 * b1] - x[3 * b1 + 2] * r1y;
+				uy += x[3 * b1 + 1] + x[3 * b1 + 2] * r1x;
+			}
+			if (b2 >= 0) {
+				ux -= x[3 * b2] - x[3 * b2 + 2] * r2y;
+				uy -= x[3 * b2 + 1] + x[3 * b2 + 2] * r2x;
+			}
+			double gx = h2
+					* (stiffness[3 * i] * ux + stiffness[3 * i + 1] * uy);
+			double gy = h2
+					* (stiffness[3 * i + 1] * ux + stiffness[3 * i + 2] * uy);
+			if (b1 >= 0) {
+				addForce(b1, r1x, r1y, gx, gy, result);
+			}
+			if (b2 >= 0) {
+				addForce(b2, r2x, r2y, -gx, -gy, result);
+			}
+		}
+	}
+}
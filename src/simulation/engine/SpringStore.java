@@ -0,0 +1,251 @@
+package simulation.engine;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The simulation's springs, packed into arrays of primitives so they can be
+ * stepped without creating any objects. Each spring is kept as the indices
+ * of its two bodies, where it is attached in each body's own frame, its
+ * natural length and its strength. A step first works out every body's
+ * center and rotation once, then finds each spring's impulse from them, and
+ * finally adds up the impulses on each body. Finding the impulses can be
+ * split among several threads, since no two springs write to the same place.
+ * <p>
+ * The impulses are the same as <code>Spring.step</code> gives, so stepping
+ * the store is the same as stepping each spring.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class SpringStore {
+	// springs found by one task when stepping in parallel
+	private static final int SPRINGS_PER_TASK = 4096;
+
+	// the bodies attached to springs, each with its center, its rotation and
+	// the rotation's cosine and sine, which are only worked out again when the
+	// body turns, and the impulse and angular impulse on it
+	private Body[] bodies = new Body[0];
+	private int bodyCount;
+	// where each body is in the arrays
+	private final BodyIndexMap indices = new BodyIndexMap();
+	private double[] centerX = new double[0], centerY = new double[0];
+	private double[] rotation = new double[0];
+	private double[] cos = new double[0], sin = new double[0];
+	private double[] impulseX = new double[0], impulseY = new double[0];
+	private double[] angularImpulse = new double[0];
+
+	// for each spring, the indices of its bodies, where it is attached in
+	// their frames, its natural length and strength
+	private int[] body1 = new int[0], body2 = new int[0];
+	private double[] anchor1X = new double[0], anchor1Y = new double[0];
+	private double[] anchor2X = new double[0], anchor2Y = new double[0];
+	private double[] naturalLength = new double[0], strength = new double[0];
+	private int springCount;
+
+	// for each spring, the impulse on its first body and where it applies,
+	// relative to the bodies' centers
+	private double[] pullX = new double[0], pullY = new double[0];
+	private double[] arm1X = new double[0], arm1Y = new double[0];
+	private double[] arm2X = new double[0], arm2Y = new double[0];
+
+	/**
+	 * Pack a list of springs, replacing any that were packed before.
+	 *
+	 * @param springs
+	 *            the springs, which the caller must keep from changing
+	 */
+	void rebuild(List<Spring> springs) {
+		int size = springs.size();
+		if (body1.length < size) {
+			body1 = new int[size];
+			body2 = new int[size];
+			anchor1X = new double[size];
+			anchor1Y = new double[size];
+			anchor2X = new double[size];
+			anchor2Y = new double[size];
+			naturalLength = new double[size];
+			strength = new double[size];
+			pullX = new double[size];
+			pullY = new double[size];
+			arm1X = new double[size];
+			arm1Y = new double[size];
+			arm2X = new double[size];
+			arm2Y = new double[size];
+		}
+		if (bodies.length < 2 * size) {
+			bodies = new Body[2 * size];
+			centerX = new double[2 * size];
+			centerY = new double[2 * size];
+			rotation = new double[2 * size];
+			cos = new double[2 * size];
+			sin = new double[2 * size];
+			impulseX = new double[2 * size];
+			impulseY = new double[2 * size];
+			angularImpulse = new double[2 * size];
+		}
+		indices.clear();
+		bodyCount = 0;
+		springCount = 0;
+		for (Spring s : springs) {
+			int i = springCount++;
+			body1[i] = number(s.connectedBody1());
+			body2[i] = number(s.connectedBody2());
+			Vector anchor1 = toBodyFrame(s.connectedBody1(), s.vertex1());
+			Vector anchor2 = toBodyFrame(s.connectedBody2(), s.vertex2());
+			anchor1X[i] = anchor1.getX();
+			anchor1Y[i] = anchor1.getY();
+			anchor2X[i] = anchor2.getX();
+			anchor2Y[i] = anchor2.getY();
+			naturalLength[i] = s.naturalLength();
+			strength[i] = s.strength();
+		}
+		// don't hold on to bodies that lost their springs
+		for (int b = bodyCount; b < bodies.length; ++b) {
+			bodies[b] = null;
+		}
+	}
+
+	/**
+	 * Give a body an index if it doesn't have one yet.
+	 */
+	private int number(Body body) {
+		int index = indices.get(body);
+		if (index < 0) {
+			index = bodyCount++;
+			indices.put(body, index);
+			rotation[index] = Double.NaN;
+			bodies[index] = body;
+		}
+		return index;
+	}
+
+	/**
+	 * Get a point relative to a body's center, unrotated.
+	 */
+	private static Vector toBodyFrame(Body body, Vector point) {
+		CollisionShape shape = body.getShape();
+		double rx = point.getX() - shape.centerX();
+		double ry = point.getY() - shape.centerY();
+		double c = Math.cos(shape.rotation()), s = Math.sin(shape.rotation());
+		return new Vector(c * rx + s * ry, c * ry - s * rx);
+	}
+
+	/**
+	 * Get the number of springs packed.
+	 *
+	 * @return the number of springs
+	 */
+	int size() {
+		return springCount;
+	}
+
+	/**
+	 * Have every spring apply force to its bodies a certain amount.
+	 *
+	 * @param amount
+	 *            the number of time units that have passed
+	 * @param parallel
+	 *            whether to find the springs' impulses on several threads
+	 */
+	void step(double amount, boolean parallel) {
+		for (int b = 0; b < bodyCount; ++b) {
+			CollisionShape shape = bodies[b].getShape();
+			centerX[b] = shape.centerX();
+			centerY[b] = shape.centerY();
+			double turned = shape.rotation();
+			if (turned != rotation[b]) {
+				rotation[b] = turned;
+				cos[b] = Math.cos(turned);
+				sin[b] = Math.sin(turned);
+			}
+			impulseX[b] = 0;
+			impulseY[b] = 0;
+			angularImpulse[b] = 0;
+		}
+		if (parallel && springCount > SPRINGS_PER_TASK) {
+			ForkJoinPool.commonPool().invoke(
+					new PullTask(0, springCount, amount));
+		} else {
+			pull(0, springCount, amount);
+		}
+		// add up the impulses one spring at a time, since bodies are shared
+		for (int i = 0; i < springCount; ++i) {
+			int b1 = body1[i], b2 = body2[i];
+			double px = pullX[i], py = pullY[i];
+			impulseX[b1] += px;
+			impulseY[b1] += py;
+			angularImpulse[b1] += arm1X[i] * py - arm1Y[i] * px;
+			impulseX[b2] -= px;
+			impulseY[b2] -= py;
+			angularImpulse[b2] -= arm2X[i] * py - arm2Y[i] * px;
+		}
+		for (int b = 0; b < bodyCount; ++b) {
+			Body body = bodies[b];
+			if (!body.fixed() && !body.isKinematic()) {
+				body.addImpulse(impulseX[b], impulseY[b]);
+				body.setAngularVelocity(body.angularVelocity()
+						+ angularImpulse[b] / body.momentOfInertia());
+			}
+		}
+	}
+
+	/**
+	 * Find the impulses of a range of springs.
+	 */
+	private void pull(int from, int to, double amount) {
+		for (int i = from; i < to; ++i) {
+			int b1 = body1[i], b2 = body2[i];
+			// where the spring is attached, relative to the centers
+			double r1x = cos[b1] * anchor1X[i] - sin[b1] * anchor1Y[i];
+			double r1y = sin[b1] * anchor1X[i] + cos[b1] * anchor1Y[i];
+			double r2x = cos[b2] * anchor2X[i] - sin[b2] * anchor2Y[i];
+			double r2y = sin[b2] * anchor2X[i] + cos[b2] * anchor2Y[i];
+			double dx = centerX[b2] + r2x - centerX[b1] - r1x;
+			double dy = centerY[b2] + r2y - centerY[b1] - r1y;
+			double dist = Math.sqrt(dx * dx + dy * dy);
+			// if this is negative, they will be pushed apart instead
+			double pull = amount * strength[i] * (dist - naturalLength[i]);
+			if (dist == 0) {
+				pullX[i] = pull;
+				pullY[i] = 0;
+			} else {
+				pullX[i] = dx * pull / dist;
+				pullY[i] = dy * pull / dist;
+			}
+			arm1X[i] = r1x;
+			arm1Y[i] = r1y;
+			arm2X[i] = r2x;
+			arm2Y[i] = r2y;
+		}
+	}
+
+	/**
+	 * Finds the impulses of a range of springs, splitting it in half until
+	 * it is small enough.
+	 */
+	private final class PullTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+		private final double amount;
+
+		PullTask(int from, int to, double amount) {
+			this.from = from;
+			this.to = to;
+			this.amount = amount;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SPRINGS_PER_TASK) {
+				pull(from, to, amount);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new PullTask(from, middle, amount), new PullTask(
+						middle, to, amount));
+			}
+		}
+	}
+}
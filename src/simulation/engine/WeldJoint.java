@@ -0,0 +1,60 @@
+package simulation.engine;
+
+/**
+ * A joint that holds two bodies together at a point and keeps them from
+ * turning relative to each other, so they move as if they were one body.
+ *
+ * @author Jacob Taylor
+ *
+ */
+public final class WeldJoint extends PinJoint {
+	// how much the second body is turned compared to the first
+	private final double angle;
+
+	// worked out by prepare: how hard the bodies are to turn relative to
+	// each other, and how fast the error should be corrected
+	private double angularMass;
+	private double angularBias;
+
+	/**
+	 * Create a joint that welds two bodies together at a point, keeping the
+	 * angle between them as it is now.
+	 *
+	 * @param b1
+	 *            the first body
+	 * @param b2
+	 *            the second body
+	 * @param point
+	 *            where the bodies are held together
+	 */
+	public WeldJoint(Body b1, Body b2, Vector point) {
+		super(b1, b2, point);
+		angle = b2.getShape().rotation() - b1.getShape().rotation();
+	}
+
+	@Override
+	void prepare(double amount) {
+		super.prepare(amount);
+		double k = inverseInertia1 + inverseInertia2;
+		angularMass = k > 0 ? 1 / k : 0;
+		double error = connectedBody2().getShape().rotation()
+				- connectedBody1().getShape().rotation() - angle;
+		angularBias = CORRECTION / amount * error;
+	}
+
+	@Override
+	void solve() {
+		applyAngularImpulse(-(relativeAngularVelocity() + angularBias)
+				* angularMass);
+		super.solve();
+	}
+
+	@Override
+	void project(double amount) {
+		prepare(amount);
+		turn(connectedBody2().getShape().rotation()
+				- connectedBody1().getShape().rotation() - angle);
+		// the pin is solved where the bodies are after turning
+		super.project(amount);
+	}
+}
@@ -0,0 +1,67 @@
+package simulation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Sorts points along a Z-order (Morton) curve. Each point's coordinates are
+ * scaled to 15 bits over the points' bounding box and their bits are
+ * interleaved, so points that are close together usually end up close
+ * together in the order. Storing objects in this order means that code which
+ * walks over neighbors walks over memory mostly sequentially.
+ *
+ * @author Jacob Taylor
+ *
+ */
+final class ZOrder {
+	// the largest scaled coordinate
+	private static final int MAX_COORDINATE = (1 << 15) - 1;
+
+	private ZOrder() {
+	}
+
+	/**
+	 * Sort points along the curve. Afterwards the low 32 bits of
+	 * <code>keys[k]</code> are the index of the k-th point in the order.
+	 *
+	 * @param xs
+	 *            the points' x coordinates
+	 * @param ys
+	 *            the points' y coordinates
+	 * @param count
+	 *            how many points there are
+	 * @param keys
+	 *            where to put the order; must have room for every point
+	 */
+	static void sort(double[] xs, double[] ys, int count, long[] keys) {
+		double xMin = Double.POSITIVE_INFINITY, yMin = Double.POSITIVE_INFINITY;
+		double xMax = Double.NEGATIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; ++i) {
+			xMin = Math.min(xMin, xs[i]);
+			xMax = Math.max(xMax, xs[i]);
+			yMin = Math.min(yMin, ys[i]);
+			yMax = Math.max(yMax, ys[i]);
+		}
+		// the same scale on both axes, so the curve's cells stay square
+		double size = Math.max(xMax - xMin, yMax - yMin);
+		double scale = size > 0 ? MAX_COORDINATE / size : 0;
+		for (int i = 0; i < count; ++i) {
+			int code = spread((int) ((xs[i] - xMin) * scale))
+					| spread((int) ((ys[i] - yMin) * scale)) << 1;
+			keys[i] = (long) code << 32 | i;
+		}
+		Arrays.sort(keys, 0, count);
+	}
+
+	/**
+	 * Spread the bits of a 15 bit number out so there is a zero between each
+	 * of them.
+	 */
+	private static int spread(int v) {
+		v &= MAX_COORDINATE;
+		v = (v | v << 8) & 0x00FF00FF;
+		v = (v | v << 4) & 0x0F0F0F0F;
+		v = (v | v << 2) & 0x33333333;
+		v = (v | v << 1) & 0x55555555;
+		return v;
+	}
+}
@@ -13,6 +13,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -29,10 +31,13 @@ import javax.swing.JSplitPane;
 import javax.swing.KeyStroke;
 
 import simulation.engine.Body;
+import simulation.engine.CollisionBox;
 import simulation.engine.CollisionCircle;
+import simulation.engine.CollisionHalfPlane;
 import simulation.engine.CollisionPolygon;
 import simulation.engine.PhysicsEvent;
 import simulation.engine.PhysicsListener;
+import simulation.engine.PolygonTemplate;
 import simulation.engine.Simulation;
 import simulation.engine.Vector;
 
@@ -70,6 +75,8 @@ public class MainWindow extends JFrame {
 
 	// Walls:
 	private Color wallColor = Color.black;
+	// the outlines of the walls, by size; opposite walls share one
+	private Map<Dimension, PolygonTemplate> wallTemplates = new HashMap<Dimension, PolygonTemplate>();
 	private Body northWall;
 	private Body southWall;
 	private Body westWall;
@@ -557,21 +564,21 @@ public class MainWindow extends JFrame {
 		presetsTimer.scheduleAtFixedRate(createCircle, 0, 1000);
 	}
 
-	private CollisionPolygon makeRectangle(double x, double y, double width,
+	private CollisionBox makeRectangle(double x, double y, double width,
 			double height, double rotation) {
 		double cs = Math.cos(rotation);
 		double sn = Math.sin(rotation);
-		Vector p1 = new Vector(x, y);
-		Vector p2 = new Vector(x + cs * width, y - sn * width);
-		Vector p3 = new Vector(x + cs * width + sn * height, y + cs * height
-				- sn * width);
-		Vector p4 = new Vector(x + sn * height, y + cs * height);
-		return new CollisionPolygon(new Vector[] { p1, p2, p3, p4 });
+		// (x, y) is a corner; the width goes along (cs, -sn) and the height
+		// along (sn, cs)
+		Vector center = new Vector(x + (cs * width + sn * height) / 2, y
+				+ (cs * height - sn * width) / 2);
+		return new CollisionBox(center, width / 2, height / 2, -rotation);
 	}
 
 	protected void startRectCollision() {
 		reset();
 		model.setGravity(0);
+		ArrayList<Body> bodies = new ArrayList<Body>();
 		for (int i = 0; i < 3; ++i) {
 			double height = 30;
 			double width = 50;
@@ -581,9 +588,10 @@ public class MainWindow extends JFrame {
 			Body rect2 = new Body(makeRectangle(150, y + 10 * (i + 1), width,
 					height, i * Math.PI / 4), 10, Body.RECTANGLE);
 			rect1.setVelocity(new Vector(10, 0));
-			model.addBody(rect1);
-			model.addBody(rect2);
+			bodies.add(rect1);
+			bodies.add(rect2);
 		}
+		model.addBodies(bodies);
 		menu.play();
 	}
 
@@ -600,9 +608,11 @@ public class MainWindow extends JFrame {
 				new CollisionCircle(6, new Vector(30, 68)),
 				new CollisionCircle(4, new Vector(30, 58)) };
 
+		ArrayList<Body> bodies = new ArrayList<Body>();
 		for (CollisionCircle circle : circles) {
-			model.addBody(new Body(circle));
+			bodies.add(new Body(circle));
 		}
+		model.addBodies(bodies);
 
 		menu.play();
 	}
@@ -642,13 +652,12 @@ public class MainWindow extends JFrame {
 		if (modelView != null) {
 
 			if (north && northWall == null) {
-				int[] x = { -20, modelView.getWidth() + 20,
-						modelView.getWidth() + 20, -20 };
-				int[] y = { -23, -23, 2, 2 };
+				// The wall is solid beyond the inner edge of the rectangle:
+				CollisionHalfPlane plane = new CollisionHalfPlane(
+						new Vector(0, 2), new Vector(0, 1), wallRectangle(-20,
+								-23, modelView.getWidth() + 20, 2));
 
-				CollisionPolygon polygon = new CollisionPolygon(x, y, 4);
-
-				northWall = new Body(polygon, 1000, wallColor, Body.WALL);
+				northWall = new Body(plane, 1000, wallColor, Body.WALL);
 				northWall.setFixed(true);
 
 				model.addBody(northWall);
@@ -683,15 +692,15 @@ public class MainWindow extends JFrame {
 		if (modelView != null) {
 
 			if (south && southWall == null) {
-				int[] x = { -20, modelView.getWidth() + 20,
-						modelView.getWidth() + 20, -20 };
-				int[] y = { modelView.getHeight() - 2,
-						modelView.getHeight() - 2, modelView.getHeight() + 23,
-						modelView.getHeight() + 23 };
-
-				CollisionPolygon polygon = new CollisionPolygon(x, y, 4);
-
-				southWall = new Body(polygon, 1000, wallColor, Body.WALL);
+				// The wall is solid beyond the inner edge of the rectangle:
+				CollisionHalfPlane plane = new CollisionHalfPlane(
+						new Vector(0, modelView.getHeight() - 2), new Vector(0,
+								-1), wallRectangle(-20,
+								modelView.getHeight() - 2,
+								modelView.getWidth() + 20,
+								modelView.getHeight() + 23));
+
+				southWall = new Body(plane, 1000, wallColor, Body.WALL);
 				southWall.setFixed(true);
 
 				model.addBody(southWall);
@@ -726,13 +735,12 @@ public class MainWindow extends JFrame {
 		if (modelView != null) {
 
 			if (west && westWall == null) {
-				int[] x = { -23, 2, 2, -23 };
-				int[] y = { -20, -20, modelView.getHeight() + 20,
-						modelView.getHeight() + 20 };
+				// The wall is solid beyond the inner edge of the rectangle:
+				CollisionHalfPlane plane = new CollisionHalfPlane(
+						new Vector(2, 0), new Vector(1, 0), wallRectangle(-23,
+								-20, 2, modelView.getHeight() + 20));
 
-				CollisionPolygon polygon = new CollisionPolygon(x, y, 4);
-
-				westWall = new Body(polygon, 1000, wallColor, Body.WALL);
+				westWall = new Body(plane, 1000, wallColor, Body.WALL);
 				westWall.setFixed(true);
 
 				model.addBody(westWall);
@@ -768,15 +776,14 @@ public class MainWindow extends JFrame {
 
 			if (east && eastWall == null) {
 
-				int[] x = { modelView.getWidth() - 2,
-						modelView.getWidth() + 23, modelView.getWidth() + 23,
-						modelView.getWidth() - 2 };
-				int[] y = { -20, -20, modelView.getHeight() + 20,
-						modelView.getHeight() + 20 };
-
-				CollisionPolygon polygon = new CollisionPolygon(x, y, 4);
+				// The wall is solid beyond the inner edge of the rectangle:
+				CollisionHalfPlane plane = new CollisionHalfPlane(
+						new Vector(modelView.getWidth() - 2, 0), new Vector(-1,
+								0), wallRectangle(modelView.getWidth() - 2,
+								-20, modelView.getWidth() + 23,
+								modelView.getHeight() + 20));
 
-				eastWall = new Body(polygon, 1000, wallColor, Body.WALL);
+				eastWall = new Body(plane, 1000, wallColor, Body.WALL);
 				eastWall.setFixed(true);
 
 				model.addBody(eastWall);
@@ -811,6 +818,40 @@ public class MainWindow extends JFrame {
 		}
 	}
 
+	/**
+	 * Makes the rectangle a wall is drawn as. Walls on opposite sides are the
+	 * same size, so they share its outline; only the outlines for the current
+	 * size of the view are kept.
+	 * 
+	 * @param left
+	 *            - the rectangle's left edge.
+	 * @param top
+	 *            - the rectangle's top edge.
+	 * @param right
+	 *            - the rectangle's right edge.
+	 * @param bottom
+	 *            - the rectangle's bottom edge.
+	 * @return the rectangle.
+	 */
+	private CollisionPolygon wallRectangle(int left, int top, int right,
+			int bottom) {
+		Dimension size = new Dimension(right - left, bottom - top);
+		PolygonTemplate template = wallTemplates.get(size);
+		if (template == null) {
+			if (wallTemplates.size() >= 2) {
+				// the view has changed size since these were made
+				wallTemplates.clear();
+			}
+			template = new PolygonTemplate(new Vector[] { new Vector(0, 0),
+					new Vector(size.width, 0),
+					new Vector(size.width, size.height),
+					new Vector(0, size.height) });
+			wallTemplates.put(size, template);
+		}
+		return template.instance(new Vector((left + right) / 2.0,
+				(top + bottom) / 2.0), 0);
+	}
+
 	/**
 	 * Returns whether all the walls exist, or more formally <code>
 	 * (northWall != null && southWall != null && 
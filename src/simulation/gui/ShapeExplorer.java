@@ -3,6 +3,9 @@ package simulation.gui;
 import java.awt.Graphics;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -85,6 +88,13 @@ public class ShapeExplorer extends JFrame {
 						repaint();
 					}
 				});
+				// one listener for every body, instead of one on each body
+				model.addBodyChangeListener(new ChangeListener() {
+					@Override
+					public void stateChanged(ChangeEvent e) {
+						repaint();
+					}
+				});
 			}
 			
 			@Override
@@ -112,12 +122,12 @@ public class ShapeExplorer extends JFrame {
 		model.addBodySetListener(new BodySetListener() {
 			@Override
 			public void bodyAdded(BodySetEvent e) {
-				addBodyNode(e.getBody());
+				addBodyNodes(e.getBodies());
 			}
 
 			@Override
 			public void bodyRemoved(BodySetEvent e) {
-				removeBodyNode(e.getBody());
+				removeBodyNodes(e.getBodies());
 			}
 		});
 
@@ -224,13 +234,6 @@ public class ShapeExplorer extends JFrame {
 	 */
 	protected void addBodyNode(Body body) {
 		ShapeNode node;
-		
-		body.addChangeListener(new ChangeListener() {
-			@Override
-			public void stateChanged(ChangeEvent e) {
-				shapeList.repaint();
-			}
-		});
 
 		switch (body.getType()) {
 
@@ -259,6 +262,117 @@ public class ShapeExplorer extends JFrame {
 		shapeList.validate();
 	}
 
+	/**
+	 * Adds a node for each of several bodies. The nodes are put in their lists
+	 * first, and then the tree is told about each list's new nodes all at
+	 * once, which is much faster than adding them one at a time when there
+	 * are many.
+	 * 
+	 * @param bodies
+	 *            - the bodies from which to create the new nodes.
+	 */
+	protected void addBodyNodes(List<Body> bodies) {
+		int circleCount = circles.getChildCount();
+		int rectangleCount = rectangles.getChildCount();
+		int polygonCount = polygons.getChildCount();
+		int wallCount = walls.getChildCount();
+
+		for (Body body : bodies) {
+			switch (body.getType()) {
+
+			case Body.RECTANGLE:
+				rectangles.add(new ShapeNode(body));
+				break;
+
+			case Body.CIRCLE:
+				circles.add(new ShapeNode(body));
+				break;
+
+			case Body.WALL:
+				walls.add(new ShapeNode(body));
+				break;
+
+			default:
+				polygons.add(new ShapeNode(body));
+				break;
+			}
+		}
+
+		nodesAdded(circles, circleCount);
+		nodesAdded(rectangles, rectangleCount);
+		nodesAdded(polygons, polygonCount);
+		nodesAdded(walls, wallCount);
+
+		shapeList.validate();
+	}
+
+	/**
+	 * Tells the tree about the nodes that were added to a list after its
+	 * first <code>count</code> nodes.
+	 */
+	private void nodesAdded(DefaultMutableTreeNode list, int count) {
+		int added = list.getChildCount() - count;
+		if (added > 0) {
+			int[] indices = new int[added];
+			for (int i = 0; i < added; i++) {
+				indices[i] = count + i;
+			}
+			treeModel.nodesWereInserted(list, indices);
+		}
+	}
+
+	/**
+	 * Removes the nodes of several bodies. Each list is gone through once for
+	 * all the bodies, and the tree is told about each list's removed nodes all
+	 * at once.
+	 * 
+	 * @param bodies
+	 *            - the bodies whose nodes to remove.
+	 */
+	protected void removeBodyNodes(List<Body> bodies) {
+		Set<Body> removed = new HashSet<Body>(bodies);
+
+		removeNodes(circles, removed);
+		removeNodes(rectangles, removed);
+		removeNodes(polygons, removed);
+		removeNodes(walls, removed);
+	}
+
+	/**
+	 * Removes the nodes of a list that belong to any of a set of bodies.
+	 */
+	private void removeNodes(DefaultMutableTreeNode list, Set<Body> removed) {
+		int count = 0;
+		for (int i = 0; i < list.getChildCount(); i++) {
+			if (list.getChildAt(i) instanceof ShapeNode
+					&& removed.contains(((ShapeNode) list.getChildAt(i))
+							.getBody())) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		int[] indices = new int[count];
+		Object[] nodes = new Object[count];
+		count = 0;
+		for (int i = 0; i < list.getChildCount(); i++) {
+			if (list.getChildAt(i) instanceof ShapeNode
+					&& removed.contains(((ShapeNode) list.getChildAt(i))
+							.getBody())) {
+				indices[count] = i;
+				nodes[count] = list.getChildAt(i);
+				count++;
+			}
+		}
+		// from the end, so the indices of the rest stay the same
+		for (int i = count - 1; i >= 0; i--) {
+			list.remove(indices[i]);
+		}
+		treeModel.nodesWereRemoved(list, indices, nodes);
+	}
+
 	protected void removeBodyNode(Body body) {
 		ShapeNode node;
 
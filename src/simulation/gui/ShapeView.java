@@ -37,6 +37,21 @@ public class ShapeView extends JPanel {
 
     private Body body;
 
+    // Keeps the editors up to date with the body; it is only registered with
+    // the body being shown.
+    private ChangeListener bodyListener = new ChangeListener() {
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            Body changed = (Body) e.getSource();
+            massSpinner.getModel().setValue(changed.getMass());
+            densitySpinner.getModel().setValue(changed.getDensity());
+            bouncinessSpinner.getModel().setValue(changed.bounciness());
+            frictionSpinner.getModel().setValue(changed.friction());
+            colorButton.setColor(changed.getColor());
+            colorLabel.setText(colorButton.getColorName());
+        }
+    };
+
     protected JTabbedPane pane;
 
     // The view panel:
@@ -245,7 +260,7 @@ public class ShapeView extends JPanel {
 
             @Override
             public void bodyRemoved(BodySetEvent e) {
-                if (e.getBody() == body) {
+                if (e.getBodies().contains(body)) {
                     setBody(null);
                 }
             }
@@ -264,21 +279,14 @@ public class ShapeView extends JPanel {
      *            - the body that this view will show and edit.
      */
     public void setBody(final Body body) {
+        if (this.body != null) {
+            this.body.removeChangeListener(bodyListener);
+        }
         this.body = body;
         tracker.setBody(body);
 
         if (body != null) {
-            body.addChangeListener(new ChangeListener() {
-                @Override
-                public void stateChanged(ChangeEvent e) {
-                    massSpinner.getModel().setValue(body.getMass());
-                    densitySpinner.getModel().setValue(body.getDensity());
-                    bouncinessSpinner.getModel().setValue(body.bounciness());
-                    frictionSpinner.getModel().setValue(body.friction());
-                    colorButton.setColor(body.getColor());
-                    colorLabel.setText(colorButton.getColorName());
-                }
-            });
+            body.addChangeListener(bodyListener);
 
             massSpinner.setEnabled(true);
             bouncinessSpinner.setEnabled(true);
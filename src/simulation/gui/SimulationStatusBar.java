@@ -32,6 +32,9 @@ public class SimulationStatusBar extends JPanel {
 	protected JPanel playingPanel;
 	protected JLabel playingLabel;
 
+	protected JPanel messagePanel;
+	protected JLabel messageLabel;
+
 	public SimulationStatusBar(final Simulation model, MainWindow mainWindow) {
 		super(new FlowLayout(FlowLayout.LEFT, 0, 0));
 
@@ -78,6 +81,23 @@ public class SimulationStatusBar extends JPanel {
 				}
 			}
 		});
+
+		messagePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+		messageLabel = new JLabel();
+		messagePanel.add(messageLabel);
+		messagePanel.setOpaque(false);
+		add(messagePanel);
+	}
+
+	/**
+	 * Shows a message at the end of the status bar, replacing any earlier
+	 * message.
+	 * 
+	 * @param message
+	 *            - the message to show.
+	 */
+	public void setMessage(String message) {
+		messageLabel.setText(message);
 	}
 
 	/**
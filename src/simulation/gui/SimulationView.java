@@ -29,10 +29,12 @@ import javax.swing.JPopupMenu;
 import javax.swing.JViewport;
 
 import simulation.engine.Body;
+import simulation.engine.CollisionBox;
 import simulation.engine.CollisionCircle;
 import simulation.engine.CollisionPolygon;
 import simulation.engine.PhysicsEvent;
 import simulation.engine.PhysicsListener;
+import simulation.engine.PolygonSimplifier;
 import simulation.engine.Simulation;
 import simulation.engine.Vector;
 
@@ -101,6 +103,9 @@ public class SimulationView extends ViewPanel implements PhysicsListener {
 	// Polygon tool:
 	private ImageIcon polygonToolIcon;
 	private Cursor polygonToolCursor;
+	// Removes extra vertices from drawn polygons:
+	private PolygonSimplifier polygonSimplifier = new PolygonSimplifier(1.5,
+			.02);
 
 	// The menu icons:
 	private ImageIcon trackIcon;
@@ -497,10 +502,8 @@ public class SimulationView extends ViewPanel implements PhysicsListener {
 	private void addDrawnShape() {
 		switch (getActiveTool()) {
 		case ADD_RECTANGLE_TOOL:
-			int[] x = { ghostStart.x, ghostStart.x, ghostEnd.x, ghostEnd.x };
-			int[] y = { ghostStart.y, ghostEnd.y, ghostEnd.y, ghostStart.y };
-			Polygon polygon = new Polygon(x, y, 4);
-			CollisionPolygon toAdd = new CollisionPolygon(polygon);
+			CollisionBox toAdd = new CollisionBox(new Vector(ghostStart.x,
+					ghostStart.y), new Vector(ghostEnd.x, ghostEnd.y));
 			ghostColor = new Color(ghostColor.getRed(), ghostColor.getGreen(),
 					ghostColor.getBlue());
 			Body bodyToAdd = new Body(toAdd, ghostColor, Body.RECTANGLE);
@@ -542,7 +545,9 @@ public class SimulationView extends ViewPanel implements PhysicsListener {
 
 		case ADD_POLYGON_TOOL:
 			if (ghost instanceof Polygon) {
-				CollisionPolygon shape = new CollisionPolygon((Polygon) ghost);
+				CollisionPolygon shape = polygonSimplifier
+						.simplify((Polygon) ghost);
+				mainWindow.statusBar.setMessage(polygonSimplifier.report());
 
 				ghostColor = new Color(ghostColor.getRed(), ghostColor
 						.getGreen(), ghostColor.getBlue());
@@ -578,6 +583,9 @@ public class SimulationView extends ViewPanel implements PhysicsListener {
 			g2d.fill(toDraw);
 		}
 
+		// Draw all the particles:
+		model.getParticles().fill(g2d);
+
 		// If a ghost of a shape is to be drawn:
 		if (drawGhost && ghost != null) {
 			g2d.setColor(ghostColor);
@@ -666,6 +674,17 @@ public class SimulationView extends ViewPanel implements PhysicsListener {
 		}
 	}
 
+	/**
+	 * Returns the simplifier used on polygons made with the polygon tool.
+	 * Changing its tolerance changes how closely new polygons follow what was
+	 * drawn.
+	 * 
+	 * @return the polygon simplifier.
+	 */
+	public PolygonSimplifier getPolygonSimplifier() {
+		return polygonSimplifier;
+	}
+
 	/**
 	 * Returns the number that corresponds to the active tool. The active tool
 	 * dictates what happens when the mouse is clicked.
@@ -11,10 +11,15 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import simulation.engine.Body;
+import simulation.engine.CollisionBox;
 import simulation.engine.CollisionCircle;
+import simulation.engine.CollisionHalfPlane;
 import simulation.engine.CollisionPolygon;
 import simulation.engine.PhysicsEvent;
 import simulation.engine.PhysicsListener;
+import simulation.engine.PolygonTemplate;
+import simulation.engine.SensorEvent;
+import simulation.engine.SensorListener;
 import simulation.engine.Simulation;
 import simulation.engine.Vector;
 import simulation.gui.ViewPanel;
@@ -28,12 +33,17 @@ public class PongPanel extends ViewPanel {
 	private Body rightPaddle;
 	private Body topWall;
 	private Body bottomWall;
+	private Body leftGoal;
+	private Body rightGoal;
 
 	private Timer timer = new Timer();
 	private AnimationTask task = new AnimationTask();
 
 	private Vector startingVelocity = new Vector(4, 6);
 
+	// scratch space for a paddle's bounding box
+	private final double[] paddleBounds = new double[4];
+
 	public PongPanel() {
 		model = new Simulation();
 
@@ -46,37 +56,40 @@ public class PongPanel extends ViewPanel {
 				repaint();
 
 				if (model.containsBody(ball)) {
-					int x = ball.getShape().toShape().getBounds().x;
-					int width = ball.getShape().toShape().getBounds().width;
-					
-					if (x + width < 0 || x > 590) {
-						model.removeBody(ball);
-
-						ball = new Body(new CollisionCircle(12, new Vector(290,
-								200)), 10, Color.blue, Body.CIRCLE);
-						model.addBody(ball);
-
-						if (Math.random() < 0.5) {
-							ball.setVelocity(startingVelocity);
-						} else {
-							ball.setVelocity(startingVelocity.invert());
-						}
-					} else {
-						ball.setVelocity(ball.getVelocity().multiply(1.0001));
-					}
+					ball.setVelocity(ball.getVelocity().multiply(1.0001));
 				}
 
 				if (leftPaddle != null) {
-					leftPaddle.setAngularVelocity(0);
-					leftPaddle.setVelocity(new Vector(0, leftPaddle
-							.getVelocity().getY()));
+					stopAtWalls(leftPaddle);
 				}
 				if (rightPaddle != null) {
-					rightPaddle.setAngularVelocity(0);
-					rightPaddle.setVelocity(new Vector(0, rightPaddle
-							.getVelocity().getY()));
+					stopAtWalls(rightPaddle);
+				}
+			}
+		});
+
+		model.addSensorListener(new SensorListener() {
+			@Override
+			public void bodyEntered(SensorEvent e) {
+				// the ball went past a paddle, so serve a new one
+				if (e.getBody() == ball) {
+					model.removeBody(ball);
+
+					ball = new Body(new CollisionCircle(12, new Vector(290,
+							200)), 10, Color.blue, Body.CIRCLE);
+					model.addBody(ball);
+
+					if (Math.random() < 0.5) {
+						ball.setVelocity(startingVelocity);
+					} else {
+						ball.setVelocity(startingVelocity.invert());
+					}
 				}
 			}
+
+			@Override
+			public void bodyExited(SensorEvent e) {
+			}
 		});
 
 		addKeyListener(new KeyAdapter() {
@@ -153,40 +166,80 @@ public class PongPanel extends ViewPanel {
 
 		Body.setDefaultBounciness(1);
 
-		int[] x = new int[] { -10, getWidth() + 10, getWidth() + 10, -10 };
-		int[] y = new int[] { 0, 0, 10, 10 };
-		CollisionPolygon shape = new CollisionPolygon(x, y, 4);
+		// the top and bottom walls are the same size, so they share an outline
+		PolygonTemplate wall = new PolygonTemplate(new Vector[] {
+				new Vector(0, 0), new Vector(getWidth() + 20, 0),
+				new Vector(getWidth() + 20, 10), new Vector(0, 10) });
+		CollisionHalfPlane shape = new CollisionHalfPlane(new Vector(0, 10),
+				new Vector(0, 1), wall.instance(new Vector(getWidth() / 2.0, 5),
+						0));
 		topWall = new Body(shape, 1000, Color.black, Body.RECTANGLE);
 		topWall.setFixed(true);
 
-		y = new int[] { getHeight(), getHeight(), getHeight() - 10,
-				getHeight() - 10 };
-		shape = new CollisionPolygon(x, y, 4);
+		shape = new CollisionHalfPlane(new Vector(0, getHeight() - 10),
+				new Vector(0, -1), wall.instance(new Vector(getWidth() / 2.0,
+						getHeight() - 5), 0));
 		bottomWall = new Body(shape, 1000, Color.black, Body.RECTANGLE);
 		bottomWall.setFixed(true);
 
+		// the paddles only move as the players tell them to
 		leftPaddle = new Body(new CollisionPolygon(
 				new int[] { 0, 10, 15, 10, 0 }, new int[] { 129, 129, 179, 229,
-						229 }, 4), 100000, Color.red, Body.RECTANGLE);
+						229 }, 4), 1000, Color.red, Body.RECTANGLE);
+		leftPaddle.setKinematic(true);
 
-		rightPaddle = new Body(new CollisionPolygon(new int[] { 590, 580, 580,
-				590 }, new int[] { 130, 130, 230, 230 }, 4), 100000,
-				Color.orange, Body.RECTANGLE);
+		rightPaddle = new Body(new CollisionBox(new Vector(580, 130),
+				new Vector(590, 230)), 1000, Color.orange, Body.RECTANGLE);
+		rightPaddle.setKinematic(true);
 
 		ball = new Body(new CollisionCircle(12, new Vector(290, 200)), 10,
 				Color.blue, Body.CIRCLE);
 
+		// the goals are just off the screen, so the ball is out of sight by
+		// the time it reaches one
+		leftGoal = new Body(new CollisionBox(new Vector(-60, 0), new Vector(
+				-25, getHeight())), 1000, Color.black, Body.RECTANGLE);
+		leftGoal.setFixed(true);
+		leftGoal.setSensor(true);
+
+		rightGoal = new Body(new CollisionBox(new Vector(getWidth() + 25, 0),
+				new Vector(getWidth() + 60, getHeight())), 1000, Color.black,
+				Body.RECTANGLE);
+		rightGoal.setFixed(true);
+		rightGoal.setSensor(true);
+
 		model.addBody(rightPaddle);
 		model.addBody(topWall);
 		model.addBody(bottomWall);
 		model.addBody(leftPaddle);
 		model.addBody(ball);
+		model.addBody(leftGoal);
+		model.addBody(rightGoal);
 
 		ball.setVelocity(startingVelocity);
 
 		timer.scheduleAtFixedRate(new AnimationTask(), 0, 10);
 	}
 
+	/**
+	 * Stop a paddle that has reached the top or bottom wall, and put it back
+	 * against the wall if it went past. The paddles are kinematic, so the
+	 * walls don't stop them on their own.
+	 */
+	private void stopAtWalls(Body paddle) {
+		paddle.getShape().getBounds(paddleBounds);
+		double top = paddleBounds[1], bottom = paddleBounds[3];
+		double speed = paddle.getVelocity().getY();
+
+		if (top <= 10 && speed < 0) {
+			paddle.getShape().move(0, 10 - top);
+			paddle.setVelocity(new Vector(0, 0));
+		} else if (bottom >= getHeight() - 10 && speed > 0) {
+			paddle.getShape().move(0, getHeight() - 10 - bottom);
+			paddle.setVelocity(new Vector(0, 0));
+		}
+	}
+
 	private void stepModel() {
 		model.step(0.05, 20);
 	}